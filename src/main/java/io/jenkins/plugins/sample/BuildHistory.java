@@ -0,0 +1,1149 @@
+package io.jenkins.plugins.sample;
+
+import hudson.Extension;
+import hudson.ExtensionList;
+import hudson.XmlFile;
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import hudson.init.Terminator;
+import hudson.model.AsyncPeriodicWork;
+import hudson.model.TaskListener;
+import hudson.util.XStream2;
+import java.io.File;
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.model.GlobalConfiguration;
+import jenkins.model.Jenkins;
+import jenkins.util.SystemProperties;
+import jenkins.util.Timer;
+
+/**
+ * Process-wide history of {@link OnboardingTask} executions.
+ * <p>
+ * The newest records are loaded once, in the background during startup, and served from memory afterwards. Until
+ * then reads see only what was recorded since startup, see {@link #isLoaded()}; writers wait for the load.
+ * Changes are persisted by a {@link WriteBehind} flusher, so a burst of builds results in one disk write: new records
+ * are appended to the configured {@link HistoryStorage}, and the small per-category state is written to an XML file.
+ * <p>
+ * Recording is lock-free: records are appended to a concurrent queue and category jobs kept in a concurrent map,
+ * so any number of builds can record at once without blocking each other. Every call to
+ * {@link #record(String, String, String, int, String)} or {@link #addRecord(String, int, String)} adds exactly one
+ * record, and the flusher always writes a snapshot taken after the last change it was scheduled for.
+ * <p>
+ * Queued records are moved in batches into a {@link CompactRecordStore}, which keeps them as dictionary-encoded
+ * primitive columns. {@link #getRecords()} is a read-only view over both that materializes records on access.
+ * <p>
+ * Per-category {@link CategoryStats} are maintained incrementally as records arrive and rebuilt from the persisted
+ * records on load, so questions like "which job ran last for this category" never scan the history. Likewise
+ * {@link OnboardingRollups} count builds per category and minute, hour and day for trends.
+ * <p>
+ * Only a bounded window of recent records is kept in memory. {@link #compact(Retention)} drops older records from
+ * memory once they are in the storage, which is queried when paging past the window, and deletes expired ones.
+ * <p>
+ * {@link #search} finds records by words of their job name through a {@link HistoryIndex} of the whole history,
+ * built from the storage after loading and kept up to date as records arrive.
+ */
+@Extension
+public class BuildHistory {
+
+    private static final Logger LOGGER = Logger.getLogger(BuildHistory.class.getName());
+
+    private static final long FLUSH_DELAY_MS =
+            SystemProperties.getLong(BuildHistory.class.getName() + ".flushDelayMillis", 2000L);
+
+    /**
+     * Records are moved from {@link #staged} into the store once this many have been queued.
+     */
+    private static final int SEAL_BATCH = 256;
+
+    /**
+     * Records read from the storage per query when indexing or copying the whole history.
+     */
+    private static final int STORAGE_PAGE = 10_000;
+
+    /**
+     * Ids missing from memory are fetched from the storage in one query per run of ids no further apart than this,
+     * about a block of the {@link HistoryLog}.
+     */
+    private static final int FETCH_GAP = 128;
+
+    private static final XStream2 XSTREAM = new XStream2();
+
+    static {
+        XSTREAM.alias("onboarding-history", Snapshot.class);
+        XSTREAM.alias("record", BuildRecord.class);
+    }
+
+    private final XmlFile file;
+    private final WriteBehind writeBehind;
+    /**
+     * Where earlier versions kept archive segments.
+     */
+    private final File archiveDir;
+
+    private volatile HistoryStorage storage;
+
+    private final CompactRecordStore store = new CompactRecordStore();
+
+    /**
+     * Records not yet moved into {@link #store}, oldest first. Only {@link #seal()} removes from it.
+     */
+    private final Queue<BuildRecord> staged = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger stagedSize = new AtomicInteger();
+    private final AtomicBoolean sealScheduled = new AtomicBoolean();
+
+    /**
+     * Records not yet appended to {@link #storage}.
+     */
+    private final Queue<BuildRecord> unpersisted = new ConcurrentLinkedQueue<>();
+
+    private final Map<String, CategoryStats> categoryStats = new ConcurrentHashMap<>();
+    private final AtomicLong nextId = new AtomicLong(1);
+
+    private volatile Retention retention = Retention.DEFAULT;
+    private volatile int compactionThreshold = Integer.MAX_VALUE;
+    private final AtomicBoolean compactionScheduled = new AtomicBoolean();
+
+    /**
+     * Runs {@link #load()} once, on the warm-up thread or on the first writer that gets to it.
+     */
+    private final FutureTask<Void> loading = new FutureTask<>(this::load, null);
+
+    private final HistoryIndex index = new HistoryIndex();
+
+    /**
+     * Records below this id are in the storage when the history is loaded and indexed from there; later ones are
+     * indexed as they are recorded.
+     */
+    private volatile long indexBoundary = 1;
+
+    private final AtomicBoolean indexing = new AtomicBoolean();
+
+    private final AtomicBoolean switching = new AtomicBoolean();
+
+    private volatile boolean indexed;
+
+    private final OnboardingRollups rollups;
+
+    /** Whether the rollups file was missing, so the rollups are rebuilt from the stored records. */
+    private volatile boolean rebuildRollups;
+
+    /**
+     * Creates the history without loading it; {@link #warmUp()} does so in the background.
+     */
+    public BuildHistory() {
+        this(new File(Jenkins.get().getRootDir(), BuildHistory.class.getName() + ".xml"), configuredStorage(), false);
+    }
+
+    BuildHistory(File file) {
+        this(file, new FileHistoryStorage(new File(file.getParentFile(), "onboarding-history")));
+    }
+
+    BuildHistory(File file, HistoryStorage storage) {
+        this(file, storage, true);
+    }
+
+    BuildHistory(File file, HistoryStorage storage, boolean loadNow) {
+        this.file = new XmlFile(XSTREAM, file);
+        this.writeBehind = new WriteBehind(file.getName(), FLUSH_DELAY_MS, this::save);
+        this.archiveDir = new File(file.getParentFile(), "onboarding-history");
+        this.rollups = new OnboardingRollups(new File(file.getParentFile(), "onboarding-rollups.bin"));
+        this.storage = storage;
+        if (loadNow) {
+            loading.run();
+            buildIndex();
+        }
+    }
+
+    /**
+     * Loads and then indexes the history in the background while Jenkins loads jobs, so neither startup nor the first
+     * request that needs it waits for the storage to be opened.
+     */
+    @Initializer(after = InitMilestone.EXTENSIONS_AUGMENTED)
+    public static void warmUp() {
+        BuildHistory history = get();
+        Timer.get().submit(() -> {
+            history.loading.run();
+            history.buildIndex();
+        });
+    }
+
+    /**
+     * Indexes the stored records, a page at a time, and counts them into the rollups if those need rebuilding.
+     */
+    void buildIndex() {
+        if (!indexing.compareAndSet(false, true)) {
+            return;
+        }
+        long start = System.nanoTime();
+        long before = indexBoundary;
+        int count = 0;
+        try {
+            List<BuildRecord> page;
+            while (!(page = storage.query(new HistoryStorage.Query(before, STORAGE_PAGE, null))).isEmpty()) {
+                index.addUnsorted(page);
+                if (rebuildRollups) {
+                    for (BuildRecord r : page) {
+                        rollups.record(r.categoryUuid, r.timestamp);
+                    }
+                }
+                count += page.size();
+                before = page.get(page.size() - 1).id;
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to index the onboarding history, search only covers recent builds", e);
+        }
+        index.sort();
+        indexed = true;
+        LOGGER.log(Level.FINE, "Indexed {0} onboarding history records in {1} ms", new Object[] {
+            count, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)
+        });
+    }
+
+    /**
+     * @return whether the stored history has been loaded; until then reads only see records made since startup
+     */
+    public boolean isLoaded() {
+        return loading.isDone();
+    }
+
+    /**
+     * Waits for the stored history, loading it on this thread if the warm-up has not started yet. Writers call this
+     * first, so new ids follow the stored ones and saved aggregates include the stored records.
+     */
+    void awaitLoaded() {
+        if (loading.isDone()) {
+            return;
+        }
+        loading.run();
+        boolean interrupted = false;
+        while (true) {
+            try {
+                loading.get();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            } catch (ExecutionException e) {
+                LOGGER.log(Level.WARNING, "Failed to load the onboarding history", e.getCause());
+                break;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static HistoryStorage configuredStorage() {
+        OnboardingPluginConfig config = GlobalConfiguration.all().get(OnboardingPluginConfig.class);
+        return config != null ? config.getHistoryStorage() : new FileHistoryStorage();
+    }
+
+    public static BuildHistory get() {
+        return ExtensionList.lookupSingleton(BuildHistory.class);
+    }
+
+    private void load() {
+        long start = System.nanoTime();
+        Snapshot snapshot = null;
+        if (file.exists()) {
+            try {
+                snapshot = (Snapshot) file.read();
+            } catch (IOException | RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Failed to load " + file, e);
+            }
+        }
+        Map<String, Long> counts = Map.of();
+        int hotRecords = Retention.DEFAULT.hotRecords;
+        if (snapshot != null) {
+            if (snapshot.records != null) {
+                counts = migrate(snapshot);
+            } else if (snapshot.categoryCounts != null) {
+                counts = snapshot.categoryCounts;
+            }
+            if (snapshot.hotRecords != null) {
+                hotRecords = snapshot.hotRecords;
+            }
+            if (snapshot.categoryJobs != null) {
+                snapshot.categoryJobs.forEach(this::updateStats);
+            }
+        }
+        try {
+            rebuildRollups = !rollups.load();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to load the onboarding rollups, rebuilding them", e);
+            rebuildRollups = true;
+        }
+        boolean loaded = false;
+        try {
+            List<BuildRecord> latest = storage.latest(hotRecords);
+            synchronized (store) {
+                for (BuildRecord r : latest) {
+                    store.append(r);
+                    updateStats(r);
+                }
+            }
+            nextId.set(storage.maxId() + 1);
+            indexBoundary = nextId.get();
+            loaded = true;
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to read the onboarding history", e);
+        }
+        // totals include the records that were not loaded
+        counts.forEach((uuid, count) -> categoryStats.compute(
+                uuid, (k, old) -> (old != null ? old : CategoryStats.EMPTY).withCount(count)));
+        OnboardingMetrics.HISTORY_LOAD.observe(start, loaded);
+    }
+
+    /**
+     * Moves the records of the XML format used by earlier versions, held in memory and in archive segments, into the
+     * storage. The XML file is rewritten without records right away, so this happens once.
+     *
+     * @return the number of records per category, including expired ones
+     */
+    private Map<String, Long> migrate(Snapshot legacy) {
+        HistoryArchive archive = new HistoryArchive(archiveDir);
+        TreeMap<Long, BuildRecord> byId = new TreeMap<>();
+        for (BuildRecord r : archive.readAll()) {
+            byId.put(r.id, r);
+        }
+        long id = 1;
+        for (BuildRecord r : legacy.records) {
+            id = Math.max(id, r.id + 1);
+        }
+        if (!byId.isEmpty()) {
+            id = Math.max(id, byId.lastKey() + 1);
+        }
+        Map<String, Long> counts = new HashMap<>();
+        if (legacy.archivedCounts != null) {
+            counts.putAll(legacy.archivedCounts);
+        }
+        for (BuildRecord r : legacy.records) {
+            // records written before ids were introduced are numbered in file order
+            BuildRecord record = r.id > 0 ? r : r.withId(id++);
+            byId.put(record.id, record);
+            if (record.categoryUuid != null) {
+                counts.merge(record.categoryUuid, 1L, Long::sum);
+            }
+        }
+        try {
+            // a previous attempt may have stopped after appending
+            if (storage.maxId() == 0) {
+                storage.append(new ArrayList<>(byId.values()));
+            }
+            file.write(new Snapshot(null, null, legacy.categoryJobs, counts, legacy.hotRecords));
+            archive.delete();
+            LOGGER.log(Level.INFO, "Migrated {0} onboarding history records to {1}", new Object[] {
+                byId.size(), storage.getDescriptor().getDisplayName()
+            });
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to migrate the onboarding history", e);
+        }
+        return counts;
+    }
+
+    /**
+     * Records one onboarding execution: updates the category's last job and appends a build record.
+     */
+    public void record(String categoryUuid, String jobFullName, String jobName, int buildNumber, String categoryName) {
+        record(categoryUuid, jobFullName, jobName, buildNumber, categoryName, null, 0, 0);
+    }
+
+    /**
+     * Records one completed onboarding execution.
+     *
+     * @param result the build result, or {@code null} if not known
+     * @param startTime when the build started, in milliseconds since the epoch
+     * @param duration how long the build took, in milliseconds
+     */
+    public void record(
+            String categoryUuid,
+            String jobFullName,
+            String jobName,
+            int buildNumber,
+            String categoryName,
+            String result,
+            long startTime,
+            long duration) {
+        awaitLoaded();
+        long start = System.nanoTime();
+        boolean succeeded = false;
+        try {
+            BuildRecord record = new BuildRecord(
+                    nextId.getAndIncrement(),
+                    jobFullName,
+                    jobName,
+                    buildNumber,
+                    categoryUuid,
+                    categoryName,
+                    System.currentTimeMillis(),
+                    result,
+                    startTime,
+                    duration);
+            updateStats(record);
+            recorded(record);
+            rollups.record(categoryUuid, record.timestamp);
+            OnboardingMetrics.categoryBuild(categoryUuid);
+            succeeded = true;
+        } finally {
+            OnboardingMetrics.HISTORY_APPEND.observe(start, succeeded);
+        }
+    }
+
+    public void addRecord(String jobName, int buildNumber, String categoryName) {
+        awaitLoaded();
+        long start = System.nanoTime();
+        boolean succeeded = false;
+        try {
+            recorded(new BuildRecord(
+                    nextId.getAndIncrement(),
+                    null,
+                    jobName,
+                    buildNumber,
+                    null,
+                    categoryName,
+                    System.currentTimeMillis()));
+            succeeded = true;
+        } finally {
+            OnboardingMetrics.HISTORY_APPEND.observe(start, succeeded);
+        }
+    }
+
+    private void recorded(BuildRecord record) {
+        unpersisted.add(record);
+        staged.add(record);
+        index.add(record);
+        int pending = stagedSize.incrementAndGet();
+        writeBehind.request();
+        if (pending >= SEAL_BATCH && sealScheduled.compareAndSet(false, true)) {
+            Timer.get().submit(() -> {
+                sealScheduled.set(false);
+                seal();
+            });
+        }
+        if (size() > compactionThreshold && compactionScheduled.compareAndSet(false, true)) {
+            Timer.get().submit(() -> {
+                compactionScheduled.set(false);
+                compact(retention);
+            });
+        }
+    }
+
+    /**
+     * Moves queued records into the store. A record is published in the store before it leaves the queue, so
+     * {@link #view()} can always find it in one or the other.
+     */
+    private void seal() {
+        synchronized (store) {
+            BuildRecord r;
+            while ((r = staged.peek()) != null) {
+                store.append(r);
+                staged.poll();
+                stagedSize.decrementAndGet();
+            }
+        }
+    }
+
+    public void updateCategoryJob(String categoryUuid, String jobFullName) {
+        awaitLoaded();
+        updateStats(categoryUuid, jobFullName);
+        writeBehind.request();
+    }
+
+    private void updateStats(BuildRecord record) {
+        if (record.categoryUuid != null) {
+            categoryStats.compute(
+                    record.categoryUuid, (uuid, old) -> (old != null ? old : CategoryStats.EMPTY).withRecord(record));
+        }
+    }
+
+    private void updateStats(String categoryUuid, String jobFullName) {
+        categoryStats.compute(
+                categoryUuid, (uuid, old) -> (old != null ? old : CategoryStats.EMPTY).withLastJob(jobFullName));
+    }
+
+    /**
+     * @return the aggregate for the category, never {@code null}
+     */
+    public CategoryStats getCategoryStats(String categoryUuid) {
+        return categoryStats.getOrDefault(categoryUuid, CategoryStats.EMPTY);
+    }
+
+    public String getLatestJobForCategory(String categoryUuid) {
+        String lastJob = getCategoryStats(categoryUuid).getLastJob();
+        return lastJob != null ? lastJob : "N/A";
+    }
+
+    /**
+     * @return number of records held in memory
+     */
+    public int size() {
+        return store.snapshot().size() + stagedSize.get();
+    }
+
+    /**
+     * @return a read-only snapshot of the records held in memory, newest first
+     */
+    public List<BuildRecord> getRecords() {
+        return view();
+    }
+
+    /**
+     * Takes a consistent snapshot of the store and the queue. Records sealed while the queue is being copied show up
+     * in both; they are recognized among the rows appended since the copy started and dropped from the queued part.
+     */
+    private RecordsView view() {
+        long appendedBefore = store.snapshot().appended();
+        BuildRecord[] pending = staged.toArray(new BuildRecord[0]);
+        CompactRecordStore.Snapshot sealed = store.snapshot();
+        int overlap = (int) Math.min(sealed.size(), sealed.appended() - appendedBefore);
+        if (overlap > 0 && pending.length > 0) {
+            Set<Long> ids = new HashSet<>();
+            for (int row = sealed.size() - overlap; row < sealed.size(); row++) {
+                ids.add(sealed.id(row));
+            }
+            pending = Arrays.stream(pending).filter(r -> !ids.contains(r.id)).toArray(BuildRecord[]::new);
+        }
+        return new RecordsView(sealed, pending);
+    }
+
+    /**
+     * Returns up to {@code limit} records older than the cursor, newest first.
+     *
+     * @param before only records with an id lower than this are returned; use {@link Long#MAX_VALUE} for the first page
+     * @param categoryUuid if not {@code null}, only records of this category are returned
+     */
+    public Page getPage(long before, int limit, String categoryUuid) {
+        return getPage(new HistoryStorage.Query(before, limit, categoryUuid));
+    }
+
+    /**
+     * Returns one page of matching records, newest first, from memory and the storage. Until the history is
+     * {@link #isLoaded() loaded} only records in memory are returned.
+     */
+    public Page getPage(HistoryStorage.Query query) {
+        int limit = query.getLimit();
+        boolean loaded = isLoaded();
+        // memory has the records not yet stored, the storage the ones evicted from memory; both hold most of them
+        Map<Long, BuildRecord> candidates = new TreeMap<>(Comparator.reverseOrder());
+        for (BuildRecord r : view()) {
+            if (query.matches(r)) {
+                candidates.put(r.id, r);
+                if (candidates.size() > limit) {
+                    break;
+                }
+            }
+        }
+        if (loaded) {
+            try {
+                for (BuildRecord r : storage.query(query.withLimit(limit + 1))) {
+                    candidates.putIfAbsent(r.id, r);
+                }
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Failed to query the onboarding history", e);
+            }
+        }
+        List<BuildRecord> page = new ArrayList<>(candidates.values());
+        if (page.size() <= limit) {
+            return new Page(page, null);
+        }
+        page = new ArrayList<>(page.subList(0, limit));
+        return new Page(page, page.get(limit - 1).id);
+    }
+
+    /**
+     * @return the per-category build counts over time
+     */
+    OnboardingRollups getRollups() {
+        return rollups;
+    }
+
+    /**
+     * @return whether {@link #search} covers the whole history rather than the records in memory
+     */
+    public boolean isIndexed() {
+        return indexed;
+    }
+
+    /**
+     * Finds records whose job name has words starting with each word of {@code text} and that match the query,
+     * newest first. Uses the {@link HistoryIndex} once it is {@link #isIndexed() built}; until then only records in
+     * memory are searched.
+     */
+    public Page search(String text, HistoryStorage.Query query) {
+        List<String> terms = HistoryIndex.words(text);
+        if (terms.isEmpty()) {
+            return getPage(query);
+        }
+        int limit = query.getLimit();
+        List<BuildRecord> page = new ArrayList<>();
+        if (!indexed) {
+            for (BuildRecord r : view()) {
+                if (query.matches(r) && HistoryIndex.matches(terms, r)) {
+                    page.add(r);
+                    if (page.size() > limit) {
+                        break;
+                    }
+                }
+            }
+        } else {
+            RecordsView view = view();
+            long before = query.getBefore();
+            while (page.size() <= limit) {
+                long[] ids = index.search(
+                        terms,
+                        query.getCategoryUuid(),
+                        query.getFrom(),
+                        query.getTo(),
+                        before,
+                        limit + 1 - page.size());
+                if (ids.length == 0) {
+                    break;
+                }
+                for (BuildRecord r : resolve(ids, view, query.getCategoryUuid())) {
+                    // the index only knew the hour of its timestamp
+                    if (query.matches(r) && HistoryIndex.matches(terms, r)) {
+                        page.add(r);
+                    }
+                }
+                before = ids[ids.length - 1];
+            }
+        }
+        if (page.size() <= limit) {
+            return new Page(page, null);
+        }
+        page = new ArrayList<>(page.subList(0, limit));
+        return new Page(page, page.get(limit - 1).id);
+    }
+
+    /**
+     * Looks up records by id: those in memory through the id column of the view, the others with one storage query
+     * per run of nearby ids. Records that retention deleted are left out.
+     *
+     * @param ids newest first
+     * @return the records found, newest first
+     */
+    private List<BuildRecord> resolve(long[] ids, RecordsView view, String categoryUuid) {
+        long[] sorted = ids.clone();
+        Arrays.sort(sorted);
+        Map<Long, BuildRecord> found = new HashMap<>();
+        for (BuildRecord r : view.pending) {
+            if (Arrays.binarySearch(sorted, r.id) >= 0) {
+                found.put(r.id, r);
+            }
+        }
+        CompactRecordStore.Snapshot sealed = view.sealed;
+        for (int row = sealed.size() - 1; row >= 0 && found.size() < sorted.length; row--) {
+            if (Arrays.binarySearch(sorted, sealed.id(row)) >= 0) {
+                found.put(sealed.id(row), sealed.get(row));
+            }
+        }
+        for (int i = 0; i < sorted.length && found.size() < sorted.length; ) {
+            if (found.containsKey(sorted[i])) {
+                i++;
+                continue;
+            }
+            int j = i + 1;
+            while (j < sorted.length && sorted[j] - sorted[j - 1] <= FETCH_GAP) {
+                j++;
+            }
+            long min = sorted[i];
+            long max = sorted[j - 1];
+            try {
+                HistoryStorage.Query range = new HistoryStorage.Query(max + 1, (int) (max - min + 1), categoryUuid)
+                        .withIdRange(min - 1, max + 1);
+                for (BuildRecord r : storage.query(range)) {
+                    if (Arrays.binarySearch(sorted, r.id) >= 0) {
+                        found.putIfAbsent(r.id, r);
+                    }
+                }
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Failed to read onboarding history records " + min + " to " + max, e);
+            }
+            i = j;
+        }
+        List<BuildRecord> records = new ArrayList<>(found.size());
+        for (long id : ids) {
+            BuildRecord r = found.get(id);
+            if (r != null) {
+                records.add(r);
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Counts all records per category with a timestamp in {@code [from, to)}, including those no longer in memory.
+     * Pending records are written to the storage first so they are included.
+     */
+    public Map<String, Long> countByCategory(long from, long to) throws IOException {
+        awaitLoaded();
+        persist();
+        return storage.countByCategory(from, to);
+    }
+
+    public HistoryStorage getStorage() {
+        return storage;
+    }
+
+    /**
+     * Switches to another kind of storage in the background. The records the new storage lacks, those newer than its
+     * newest one, are copied into it oldest first while the current storage stays in use, and the history switches
+     * once the copy has caught up. A storage with newer records than the current one is refused, since the ids
+     * recorded next would collide with them.
+     *
+     * @return completes once the history uses {@code next}
+     */
+    public Future<?> setStorage(HistoryStorage next) throws IOException {
+        awaitLoaded();
+        HistoryStorage current = storage;
+        if (next.getClass() == current.getClass()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        if (!switching.compareAndSet(false, true)) {
+            throw new IOException("The onboarding history is already switching to another storage");
+        }
+        try {
+            persist();
+            long after = next.maxId();
+            if (after > current.maxId()) {
+                throw new IOException(next.getDescriptor().getDisplayName() + " already holds records up to id "
+                        + after + ", newer than those in " + current.getDescriptor().getDisplayName());
+            }
+            return Timer.get().submit(() -> {
+                try {
+                    switchStorage(current, next, after);
+                } catch (IOException | RuntimeException e) {
+                    LOGGER.log(Level.WARNING, "Failed to switch the onboarding history storage", e);
+                    throw e;
+                } finally {
+                    switching.set(false);
+                }
+                return null;
+            });
+        } catch (IOException | RuntimeException e) {
+            switching.set(false);
+            throw e;
+        }
+    }
+
+    private void switchStorage(HistoryStorage current, HistoryStorage next, long after) throws IOException {
+        long copied = copy(current, next, after, current.maxId());
+        synchronized (this) {
+            // records persisted while copying
+            persist();
+            copy(current, next, copied, current.maxId());
+            storage = next;
+            current.close();
+        }
+    }
+
+    /**
+     * Copies the records with ids in {@code (after, upTo]} oldest first, a window of ids at a time, so the history is
+     * never held in memory as a whole.
+     *
+     * @return {@code upTo}
+     */
+    private static long copy(HistoryStorage from, HistoryStorage to, long after, long upTo) throws IOException {
+        for (long low = after; low < upTo; low += STORAGE_PAGE) {
+            HistoryStorage.Query window = new HistoryStorage.Query(Long.MAX_VALUE, STORAGE_PAGE, null)
+                    .withIdRange(low, Math.min(low + STORAGE_PAGE, upTo) + 1);
+            List<BuildRecord> page = new ArrayList<>(from.query(window));
+            if (!page.isEmpty()) {
+                Collections.reverse(page);
+                to.append(page);
+            }
+        }
+        return upTo;
+    }
+
+    /**
+     * Applies the retention policy: records beyond the in-memory window or the per-category cap, or expired, are
+     * dropped from memory after making sure they are in the storage, and expired records are deleted. Only one
+     * compaction runs at a time.
+     *
+     * @return the number of records removed from memory
+     */
+    public synchronized int compact(Retention policy) {
+        awaitLoaded();
+        retention = policy;
+        compactionThreshold =
+                policy.hotRecords > 0 ? policy.hotRecords + Math.max(policy.hotRecords / 2, 100) : Integer.MAX_VALUE;
+        long cutoff = policy.maxAgeDays > 0
+                ? System.currentTimeMillis() - TimeUnit.DAYS.toMillis(policy.maxAgeDays)
+                : Long.MIN_VALUE;
+
+        seal();
+        try {
+            persist();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to store the onboarding history, keeping records in memory", e);
+            return 0;
+        }
+        int removed;
+        synchronized (store) {
+            CompactRecordStore.Snapshot s = store.snapshot();
+            BitSet remove = new BitSet(s.size());
+            int head = 0;
+            while (head < s.size()
+                    && ((policy.hotRecords > 0 && s.size() - head > policy.hotRecords) || s.timestamp(head) < cutoff)) {
+                remove.set(head++);
+            }
+            if (policy.maxPerCategory > 0) {
+                Map<String, Integer> seen = new HashMap<>();
+                for (int row = s.size() - 1; row >= head; row--) {
+                    String uuid = s.categoryUuid(row);
+                    if (uuid != null && seen.merge(uuid, 1, Integer::sum) > policy.maxPerCategory) {
+                        remove.set(row);
+                    }
+                }
+            }
+            store.remove(remove);
+            removed = remove.cardinality();
+        }
+        if (policy.maxAgeDays > 0) {
+            try {
+                storage.deleteOlderThan(policy.maxAgeDays);
+                index.removeOlderThan(cutoff);
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Failed to delete expired onboarding history", e);
+            }
+        }
+        writeBehind.request();
+        return removed;
+    }
+
+    /**
+     * Writes any pending changes to disk right away.
+     */
+    public void flush() throws IOException {
+        writeBehind.flush();
+    }
+
+    private void save() throws IOException {
+        long start = System.nanoTime();
+        boolean saved = false;
+        try {
+            write();
+            saved = true;
+        } finally {
+            OnboardingMetrics.HISTORY_FLUSH.observe(start, saved);
+        }
+    }
+
+    private void write() throws IOException {
+        awaitLoaded();
+        persist();
+        Map<String, String> categoryJobs = new HashMap<>();
+        Map<String, Long> categoryCounts = new HashMap<>();
+        categoryStats.forEach((uuid, stats) -> {
+            if (stats.getLastJob() != null) {
+                categoryJobs.put(uuid, stats.getLastJob());
+            }
+            categoryCounts.put(uuid, stats.getCount());
+        });
+        file.write(new Snapshot(null, null, categoryJobs, categoryCounts, retention.hotRecords));
+        rollups.save();
+    }
+
+    /**
+     * Appends the records not yet written to the storage, in id order.
+     */
+    private synchronized void persist() throws IOException {
+        List<BuildRecord> batch = new ArrayList<>();
+        BuildRecord r;
+        while ((r = unpersisted.poll()) != null) {
+            batch.add(r);
+        }
+        batch.sort(Comparator.comparingLong(BuildRecord::getId));
+        try {
+            storage.append(batch);
+        } catch (IOException e) {
+            unpersisted.addAll(batch);
+            throw e;
+        }
+    }
+
+    @Terminator
+    public static void flushOnShutdown() throws IOException {
+        BuildHistory history = ExtensionList.lookup(BuildHistory.class).get(BuildHistory.class);
+        if (history != null) {
+            history.flush();
+            history.storage.close();
+        }
+    }
+
+    @Extension
+    public static final class Compactor extends AsyncPeriodicWork {
+
+        public Compactor() {
+            super("Onboarding history compaction");
+        }
+
+        @Override
+        public long getRecurrencePeriod() {
+            return TimeUnit.MINUTES.toMillis(5);
+        }
+
+        @Override
+        protected void execute(TaskListener listener) {
+            OnboardingPluginConfig config = GlobalConfiguration.all().get(OnboardingPluginConfig.class);
+            Retention policy = config != null ? config.getHistoryRetention() : Retention.DEFAULT;
+            int removed = BuildHistory.get().compact(policy);
+            listener.getLogger().println("Removed " + removed + " onboarding history records from memory");
+        }
+    }
+
+    /**
+     * How much of the history is kept in memory, and for how long any of it is kept at all.
+     */
+    public static final class Retention {
+
+        public static final Retention DEFAULT = new Retention(1000, 0, 0);
+
+        private final int hotRecords;
+        private final int maxPerCategory;
+        private final int maxAgeDays;
+
+        /**
+         * @param hotRecords records kept in memory; older ones are archived. 0 keeps everything in memory
+         * @param maxPerCategory records per category kept in memory; 0 for no cap
+         * @param maxAgeDays records older than this are deleted, including archived ones; 0 keeps them forever
+         */
+        public Retention(int hotRecords, int maxPerCategory, int maxAgeDays) {
+            this.hotRecords = hotRecords;
+            this.maxPerCategory = maxPerCategory;
+            this.maxAgeDays = maxAgeDays;
+        }
+
+        public int getHotRecords() {
+            return hotRecords;
+        }
+
+        public int getMaxPerCategory() {
+            return maxPerCategory;
+        }
+
+        public int getMaxAgeDays() {
+            return maxAgeDays;
+        }
+    }
+
+    /**
+     * Records held in memory, newest first: the queued records followed by the store's rows in reverse.
+     */
+    private static final class RecordsView extends AbstractList<BuildRecord> implements RandomAccess {
+        private final CompactRecordStore.Snapshot sealed;
+        private final BuildRecord[] pending;
+
+        RecordsView(CompactRecordStore.Snapshot sealed, BuildRecord[] pending) {
+            this.sealed = sealed;
+            this.pending = pending;
+        }
+
+        @Override
+        public BuildRecord get(int index) {
+            if (index < 0 || index >= size()) {
+                throw new IndexOutOfBoundsException(index);
+            }
+            if (index < pending.length) {
+                return pending[pending.length - 1 - index];
+            }
+            return sealed.get(sealed.size() - 1 - (index - pending.length));
+        }
+
+        @Override
+        public int size() {
+            return pending.length + sealed.size();
+        }
+    }
+
+    private static final class Snapshot {
+        /**
+         * Only present in files written by earlier versions, see {@link #migrate(Snapshot)}.
+         */
+        private final List<BuildRecord> records;
+
+        /**
+         * Only present in files written by earlier versions: records per category no longer held in memory.
+         */
+        private final Map<String, Long> archivedCounts;
+
+        private final Map<String, String> categoryJobs;
+        private final Map<String, Long> categoryCounts;
+
+        /**
+         * The in-memory window when the file was written, so the same number of records is loaded again.
+         */
+        private final Integer hotRecords;
+
+        Snapshot(
+                List<BuildRecord> records,
+                Map<String, Long> archivedCounts,
+                Map<String, String> categoryJobs,
+                Map<String, Long> categoryCounts,
+                Integer hotRecords) {
+            this.records = records;
+            this.archivedCounts = archivedCounts;
+            this.categoryJobs = categoryJobs;
+            this.categoryCounts = categoryCounts;
+            this.hotRecords = hotRecords;
+        }
+    }
+
+    public static final class Page {
+        private final List<BuildRecord> records;
+        private final Long next;
+
+        Page(List<BuildRecord> records, Long next) {
+            this.records = records;
+            this.next = next;
+        }
+
+        public List<BuildRecord> getRecords() {
+            return records;
+        }
+
+        /**
+         * @return the cursor for the following page, or {@code null} if this is the last one
+         */
+        public Long getNext() {
+            return next;
+        }
+    }
+
+    public static class BuildRecord {
+        private final long id;
+        private final String jobFullName;
+        private final String jobName;
+        private final int buildNumber;
+        private final String categoryUuid;
+        private final String categoryName;
+        private final long timestamp;
+        private final String result;
+        private final long startTime;
+        private final long duration;
+
+        public BuildRecord(
+                long id,
+                String jobFullName,
+                String jobName,
+                int buildNumber,
+                String categoryUuid,
+                String categoryName,
+                long timestamp) {
+            this(id, jobFullName, jobName, buildNumber, categoryUuid, categoryName, timestamp, null, 0, 0);
+        }
+
+        public BuildRecord(
+                long id,
+                String jobFullName,
+                String jobName,
+                int buildNumber,
+                String categoryUuid,
+                String categoryName,
+                long timestamp,
+                String result,
+                long startTime,
+                long duration) {
+            this.id = id;
+            this.jobFullName = jobFullName;
+            this.jobName = jobName;
+            this.buildNumber = buildNumber;
+            this.categoryUuid = categoryUuid;
+            this.categoryName = categoryName;
+            this.timestamp = timestamp;
+            this.result = result;
+            this.startTime = startTime;
+            this.duration = duration;
+        }
+
+        BuildRecord withId(long id) {
+            return new BuildRecord(
+                    id,
+                    jobFullName,
+                    jobName,
+                    buildNumber,
+                    categoryUuid,
+                    categoryName,
+                    timestamp,
+                    result,
+                    startTime,
+                    duration);
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        /**
+         * @return the job's full name, or {@code null} for records written before it was kept
+         */
+        public String getJobFullName() {
+            return jobFullName;
+        }
+
+        public String getJobName() {
+            return jobName;
+        }
+
+        public int getBuildNumber() {
+            return buildNumber;
+        }
+
+        public String getCategoryUuid() {
+            return categoryUuid;
+        }
+
+        public String getCategoryName() {
+            return categoryName;
+        }
+
+        /**
+         * @return when the record was written, which for completed builds is their completion time
+         */
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        /**
+         * @return the build result, or {@code null} for records written before results were kept
+         */
+        public String getResult() {
+            return result;
+        }
+
+        public long getStartTime() {
+            return startTime;
+        }
+
+        public long getDuration() {
+            return duration;
+        }
+    }
+}
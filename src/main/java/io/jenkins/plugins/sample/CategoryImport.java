@@ -0,0 +1,201 @@
+package io.jenkins.plugins.sample;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import net.sf.json.JSONException;
+import net.sf.json.JSONObject;
+
+/**
+ * Applies a bulk list of categories, read line by line as NDJSON or CSV, to {@link OnboardingPluginConfig}.
+ * <p>
+ * Each entry adds, renames or removes one category by UUID; entries without a UUID add a new category. NDJSON lines
+ * are objects with {@code uuid}, {@code categoryName} and optionally {@code "remove": true}. CSV rows have the columns
+ * {@code uuid,categoryName[,remove]}, with an optional header row. A byte order mark and blank lines are skipped. The
+ * result is written with a single save.
+ */
+final class CategoryImport {
+
+    enum Format {
+        NDJSON,
+        CSV;
+
+        /**
+         * @param format {@code ndjson} or {@code csv}; if empty, derived from the content type, defaulting to NDJSON
+         */
+        static Format of(String format, String contentType) {
+            if (format != null && !format.isEmpty()) {
+                return valueOf(format.toUpperCase(Locale.ROOT));
+            }
+            return contentType != null && contentType.startsWith("text/csv") ? CSV : NDJSON;
+        }
+    }
+
+    /** Imported names by UUID, in import order. */
+    private final Map<String, String> names = new LinkedHashMap<>();
+
+    private final Set<String> removals = new HashSet<>();
+
+    private final List<String> unidentified = new ArrayList<>();
+
+    private int added;
+    private int renamed;
+    private int removed;
+    private int unchanged;
+
+    private CategoryImport() {}
+
+    /**
+     * Reads all entries, then replaces the categories of the configuration with the result.
+     *
+     * @param replace whether categories missing from the import are removed
+     * @throws IllegalArgumentException if an entry is malformed; nothing is changed then
+     */
+    static JSONObject apply(OnboardingPluginConfig config, Reader in, Format format, boolean replace)
+            throws IOException {
+        CategoryImport diff = new CategoryImport();
+        BufferedReader reader = new BufferedReader(in);
+        String line;
+        int number = 0;
+        boolean first = true;
+        while ((line = reader.readLine()) != null) {
+            number++;
+            if (number == 1 && line.startsWith("\uFEFF")) {
+                line = line.substring(1);
+            }
+            if (line.isBlank()) {
+                continue;
+            }
+            if (format == Format.NDJSON) {
+                diff.readJson(line, number);
+            } else if (!first || !isCsvHeader(line, number)) {
+                diff.readCsv(line, number);
+            }
+            first = false;
+        }
+        List<OnboardingPluginConfig.Category> next = diff.merge(config.getCategories(), replace);
+        if (diff.added + diff.renamed + diff.removed > 0) {
+            config.update(c -> c.setCategories(next));
+        }
+        JSONObject result = new JSONObject();
+        result.put("added", diff.added);
+        result.put("renamed", diff.renamed);
+        result.put("removed", diff.removed);
+        result.put("unchanged", diff.unchanged);
+        return result;
+    }
+
+    private void readJson(String line, int number) {
+        JSONObject o;
+        try {
+            o = JSONObject.fromObject(line);
+        } catch (JSONException e) {
+            throw new IllegalArgumentException("Line " + number + ": " + e.getMessage(), e);
+        }
+        add(o.optString("uuid", ""), o.optString("categoryName", ""), o.optBoolean("remove"), number);
+    }
+
+    private static boolean isCsvHeader(String line, int number) {
+        return parseCsv(line, number).get(0).trim().equalsIgnoreCase("uuid");
+    }
+
+    private void readCsv(String line, int number) {
+        List<String> fields = parseCsv(line, number);
+        add(
+                fields.get(0),
+                fields.size() > 1 ? fields.get(1) : "",
+                fields.size() > 2 && "remove".equalsIgnoreCase(fields.get(2).trim()),
+                number);
+    }
+
+    private void add(String uuid, String name, boolean remove, int number) {
+        uuid = uuid.trim();
+        name = name.trim();
+        if (remove) {
+            if (uuid.isEmpty()) {
+                throw new IllegalArgumentException("Line " + number + ": a category to remove needs a UUID");
+            }
+            names.remove(uuid);
+            removals.add(uuid);
+        } else if (name.isEmpty()) {
+            throw new IllegalArgumentException("Line " + number + ": missing categoryName");
+        } else if (uuid.isEmpty()) {
+            unidentified.add(name);
+        } else {
+            removals.remove(uuid);
+            names.put(uuid, name);
+        }
+    }
+
+    private List<OnboardingPluginConfig.Category> merge(
+            List<OnboardingPluginConfig.Category> current, boolean replace) {
+        List<OnboardingPluginConfig.Category> next = new ArrayList<>();
+        if (current != null) {
+            for (OnboardingPluginConfig.Category c : current) {
+                String name = names.remove(c.getUuid());
+                if (removals.contains(c.getUuid()) || (name == null && replace)) {
+                    removed++;
+                } else if (name == null) {
+                    next.add(c);
+                } else if (name.equals(c.getCategoryName())) {
+                    unchanged++;
+                    next.add(c);
+                } else {
+                    renamed++;
+                    next.add(c.withName(name));
+                }
+            }
+        }
+        // what is left is new; removals of unknown UUIDs are ignored
+        names.forEach((uuid, name) -> {
+            added++;
+            next.add(new OnboardingPluginConfig.Category(name, uuid));
+        });
+        for (String name : unidentified) {
+            added++;
+            next.add(new OnboardingPluginConfig.Category(name, null));
+        }
+        return next;
+    }
+
+    /**
+     * Splits one CSV row; fields may be quoted, with {@code ""} for a quote, but must not span lines.
+     */
+    static List<String> parseCsv(String line, int number) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Line " + number + ": unterminated quote");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+}
@@ -0,0 +1,107 @@
+package io.jenkins.plugins.sample;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Immutable name index of the configured categories, used by the category typeahead of {@link OnboardingTask}.
+ * <p>
+ * Every word of a category name is a key, so {@code ops} finds both "Ops Team" and "Cloud Ops". The keys are sorted,
+ * which makes the matches of a prefix one contiguous range found by binary search. Names are only scanned for
+ * substrings when prefix matches do not fill the requested number of results.
+ */
+final class CategorySearchIndex {
+
+    /** The {@link OnboardingPluginConfig#getCategoriesVersion() version} of the categories indexed. */
+    private final long version;
+
+    /** Categories sorted by name. */
+    private final OnboardingPluginConfig.Category[] categories;
+
+    /** Lower-case names, in the order of {@link #categories}. */
+    private final String[] names;
+
+    /** Sorted name suffixes starting at a word. */
+    private final String[] keys;
+
+    /** Index into {@link #categories} of each key. */
+    private final int[] keyCategories;
+
+    CategorySearchIndex(List<OnboardingPluginConfig.Category> list, long version) {
+        this.version = version;
+        categories = list.stream()
+                .sorted(Comparator.comparing(c -> normalize(c.getCategoryName())))
+                .toArray(OnboardingPluginConfig.Category[]::new);
+        names = new String[categories.length];
+        List<String> words = new ArrayList<>();
+        List<Integer> owners = new ArrayList<>();
+        for (int i = 0; i < categories.length; i++) {
+            String name = normalize(categories[i].getCategoryName());
+            names[i] = name;
+            for (int j = 0; j < name.length(); j++) {
+                if (Character.isLetterOrDigit(name.charAt(j))
+                        && (j == 0 || !Character.isLetterOrDigit(name.charAt(j - 1)))) {
+                    words.add(name.substring(j));
+                    owners.add(i);
+                }
+            }
+        }
+        Integer[] order = new Integer[words.size()];
+        Arrays.setAll(order, i -> i);
+        Arrays.sort(order, Comparator.comparing(words::get));
+        keys = new String[order.length];
+        keyCategories = new int[order.length];
+        for (int i = 0; i < order.length; i++) {
+            keys[i] = words.get(order[i]);
+            keyCategories[i] = owners.get(order[i]);
+        }
+    }
+
+    private static String normalize(String s) {
+        return s == null ? "" : s.trim().toLowerCase(Locale.ROOT);
+    }
+
+    long getVersion() {
+        return version;
+    }
+
+    int size() {
+        return categories.length;
+    }
+
+    /**
+     * @return up to {@code limit} categories, those with a word starting with {@code query} before those merely
+     *     containing it; the first categories by name if {@code query} is empty
+     */
+    List<OnboardingPluginConfig.Category> search(String query, int limit) {
+        String q = normalize(query);
+        List<OnboardingPluginConfig.Category> result = new ArrayList<>(Math.min(limit, categories.length));
+        if (q.isEmpty()) {
+            for (int i = 0; i < categories.length && result.size() < limit; i++) {
+                result.add(categories[i]);
+            }
+            return result;
+        }
+        BitSet found = new BitSet(categories.length);
+        int from = Arrays.binarySearch(keys, q);
+        for (int i = from >= 0 ? from : -from - 1;
+                i < keys.length && keys[i].startsWith(q) && result.size() < limit;
+                i++) {
+            int c = keyCategories[i];
+            if (!found.get(c)) {
+                found.set(c);
+                result.add(categories[c]);
+            }
+        }
+        for (int i = 0; i < names.length && result.size() < limit; i++) {
+            if (!found.get(i) && names[i].contains(q)) {
+                result.add(categories[i]);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,86 @@
+package io.jenkins.plugins.sample;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable per-category aggregate of the onboarding history.
+ * <p>
+ * {@link BuildHistory} replaces the instance on every record, so reads never need to scan the history.
+ */
+public final class CategoryStats {
+
+    static final int RECENT_SIZE = 10;
+
+    static final CategoryStats EMPTY = new CategoryStats(null, 0, 0, 0, new BuildHistory.BuildRecord[0]);
+
+    private final String lastJob;
+    private final int lastBuildNumber;
+    private final long lastTimestamp;
+    private final long count;
+
+    /**
+     * The most recent records, oldest first.
+     */
+    private final BuildHistory.BuildRecord[] recent;
+
+    private CategoryStats(
+            String lastJob, int lastBuildNumber, long lastTimestamp, long count, BuildHistory.BuildRecord[] recent) {
+        this.lastJob = lastJob;
+        this.lastBuildNumber = lastBuildNumber;
+        this.lastTimestamp = lastTimestamp;
+        this.count = count;
+        this.recent = recent;
+    }
+
+    CategoryStats withRecord(BuildHistory.BuildRecord record) {
+        int keep = Math.min(recent.length, RECENT_SIZE - 1);
+        BuildHistory.BuildRecord[] next = new BuildHistory.BuildRecord[keep + 1];
+        System.arraycopy(recent, recent.length - keep, next, 0, keep);
+        next[keep] = record;
+        return new CategoryStats(
+                record.getJobFullName() != null ? record.getJobFullName() : lastJob,
+                record.getBuildNumber(),
+                record.getTimestamp(),
+                count + 1,
+                next);
+    }
+
+    CategoryStats withCount(long extra) {
+        return new CategoryStats(lastJob, lastBuildNumber, lastTimestamp, count + extra, recent);
+    }
+
+    CategoryStats withLastJob(String jobFullName) {
+        return new CategoryStats(jobFullName, lastBuildNumber, lastTimestamp, count, recent);
+    }
+
+    /**
+     * @return full name of the last job that ran for this category, or {@code null} if none did
+     */
+    public String getLastJob() {
+        return lastJob;
+    }
+
+    public int getLastBuildNumber() {
+        return lastBuildNumber;
+    }
+
+    public long getLastTimestamp() {
+        return lastTimestamp;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return the last {@value #RECENT_SIZE} records at most, newest first
+     */
+    public List<BuildHistory.BuildRecord> getRecentRecords() {
+        List<BuildHistory.BuildRecord> list = new ArrayList<>(recent.length);
+        Collections.addAll(list, recent);
+        Collections.reverse(list);
+        return list;
+    }
+}
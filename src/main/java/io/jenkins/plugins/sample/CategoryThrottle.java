@@ -0,0 +1,218 @@
+package io.jenkins.plugins.sample;
+
+import hudson.Extension;
+import hudson.model.AsyncPeriodicWork;
+import hudson.model.Computer;
+import hudson.model.Executor;
+import hudson.model.ExecutorListener;
+import hudson.model.Project;
+import hudson.model.Queue;
+import hudson.model.TaskListener;
+import hudson.model.queue.CauseOfBlockage;
+import hudson.model.queue.QueueListener;
+import hudson.model.queue.QueueTaskDispatcher;
+import hudson.model.queue.WorkUnit;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import jenkins.model.Jenkins;
+
+/**
+ * Keeps builds of a category waiting in the queue while as many builds of it are running as its
+ * {@link OnboardingPluginConfig.Category#getMaxConcurrentBuilds() limit} allows.
+ * <p>
+ * A build counts from the moment it stops being buildable, on its way to an executor, until that executor is done
+ * with it, whether the build ran or failed to start. The counts are atomic integers in a concurrent map, changed by
+ * the queue events seen by {@link Starts} and {@link Completions} and read without locking by {@link #canRun}, which
+ * never looks at other queue items or executors. {@link Reconciliation} periodically releases builds whose executor
+ * gave up on them without telling.
+ * <p>
+ * The category of a queued task is known for projects with an {@link OnboardingTask} build step only; Pipeline jobs
+ * choose theirs while running and are not throttled.
+ */
+@Extension
+public class CategoryThrottle extends QueueTaskDispatcher {
+
+    private static final ConcurrentMap<String, AtomicInteger> RUNNING = new ConcurrentHashMap<>();
+
+    /** Category of each counted build, by queue item id. */
+    private static final ConcurrentMap<Long, String> COUNTED = new ConcurrentHashMap<>();
+
+    @Override
+    public CauseOfBlockage canRun(Queue.Item item) {
+        OnboardingPluginConfig config = OnboardingPluginConfig.get();
+        if (config == null || !config.isConcurrencyLimited()) {
+            return null;
+        }
+        OnboardingPluginConfig.Category category = config.getCategory(categoryOf(item.task));
+        if (category == null || category.getMaxConcurrentBuilds() <= 0) {
+            return null;
+        }
+        int limit = category.getMaxConcurrentBuilds();
+        return running(category.getUuid()) >= limit
+                ? new BecauseCategoryIsBusy(category.getCategoryName(), limit)
+                : null;
+    }
+
+    /**
+     * @return the number of counted builds of the category
+     */
+    static int running(String categoryUuid) {
+        AtomicInteger count = RUNNING.get(categoryUuid);
+        return count != null ? count.get() : 0;
+    }
+
+    /**
+     * Releases counted builds that neither the pending list nor an executor holds any more, in case an executor gave
+     * up on one without telling {@link Completions}. Runs with the queue locked, so a build being handed over is in
+     * one of the two.
+     */
+    static void releaseAbandoned() {
+        Queue.withLock(() -> {
+            if (COUNTED.isEmpty()) {
+                return;
+            }
+            Set<Long> held = new HashSet<>();
+            for (Queue.BuildableItem pending : Queue.getInstance().getPendingItems()) {
+                held.add(pending.getId());
+            }
+            for (Computer computer : Jenkins.get().getComputers()) {
+                for (Executor executor : computer.getAllExecutors()) {
+                    WorkUnit workUnit = executor.getCurrentWorkUnit();
+                    if (workUnit != null) {
+                        held.add(workUnit.context.item.getId());
+                    }
+                }
+            }
+            for (Long id : COUNTED.keySet()) {
+                if (!held.contains(id)) {
+                    release(id);
+                }
+            }
+        });
+    }
+
+    private static void count(long id, Queue.Task task) {
+        String categoryUuid = categoryOf(task);
+        if (categoryUuid != null && COUNTED.putIfAbsent(id, categoryUuid) == null) {
+            RUNNING.computeIfAbsent(categoryUuid, k -> new AtomicInteger()).incrementAndGet();
+        }
+    }
+
+    private static void release(long id) {
+        String categoryUuid = COUNTED.remove(id);
+        if (categoryUuid != null) {
+            RUNNING.get(categoryUuid).decrementAndGet();
+        }
+    }
+
+    private static String categoryOf(Queue.Task task) {
+        if (task instanceof Project<?, ?> project) {
+            OnboardingTask step = project.getBuildersList().get(OnboardingTask.class);
+            return step != null ? step.getCategoryUuid() : null;
+        }
+        return null;
+    }
+
+    static final class BecauseCategoryIsBusy extends CauseOfBlockage {
+
+        private final String categoryName;
+        private final int limit;
+
+        BecauseCategoryIsBusy(String categoryName, int limit) {
+            this.categoryName = categoryName;
+            this.limit = limit;
+        }
+
+        @Override
+        public String getShortDescription() {
+            return "Waiting for one of the " + limit + " running builds of category " + categoryName + " to finish";
+        }
+    }
+
+    /**
+     * Releases a counted build when its executor is done with the queue item, also if no build could be created.
+     */
+    @Extension
+    public static final class Completions implements ExecutorListener {
+
+        @Override
+        public void taskCompleted(Executor executor, Queue.Task task, long durationMS) {
+            release(executor);
+        }
+
+        @Override
+        public void taskCompletedWithProblems(Executor executor, Queue.Task task, long durationMS, Throwable problems) {
+            release(executor);
+        }
+
+        private static void release(Executor executor) {
+            WorkUnit workUnit = executor.getCurrentWorkUnit();
+            if (workUnit != null) {
+                CategoryThrottle.release(workUnit.context.item.getId());
+            }
+        }
+    }
+
+    /**
+     * Counts a build when its queue item stops being buildable, which is when it is handed to an executor, and
+     * releases it again if it turns out to be blocked, is cancelled or becomes buildable again. These events happen
+     * while the queue is locked, so the next {@link #canRun} sees their outcome.
+     */
+    @Extension
+    public static final class Starts extends QueueListener {
+
+        @Override
+        public void onLeaveBuildable(Queue.BuildableItem bi) {
+            count(bi.getId(), bi.task);
+        }
+
+        @Override
+        public void onEnterBuildable(Queue.BuildableItem bi) {
+            release(bi.getId());
+        }
+
+        @Override
+        public void onEnterBlocked(Queue.BlockedItem bi) {
+            release(bi.getId());
+        }
+
+        @Override
+        public void onEnterWaiting(Queue.WaitingItem wi) {
+            release(wi.getId());
+        }
+
+        @Override
+        public void onLeft(Queue.LeftItem li) {
+            if (li.isCancelled()) {
+                release(li.getId());
+            } else {
+                count(li.getId(), li.task);
+            }
+        }
+    }
+
+    /**
+     * Releases abandoned builds, see {@link #releaseAbandoned()}.
+     */
+    @Extension
+    public static final class Reconciliation extends AsyncPeriodicWork {
+
+        public Reconciliation() {
+            super("Onboarding category throttle reconciliation");
+        }
+
+        @Override
+        public long getRecurrencePeriod() {
+            return TimeUnit.MINUTES.toMillis(1);
+        }
+
+        @Override
+        protected void execute(TaskListener listener) {
+            releaseAbandoned();
+        }
+    }
+}
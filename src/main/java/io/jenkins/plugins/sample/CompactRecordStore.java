@@ -0,0 +1,240 @@
+package io.jenkins.plugins.sample;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Column-oriented, dictionary-encoded storage for {@link BuildHistory.BuildRecord}s.
+ * <p>
+ * Every distinct string (job names, category UUIDs and names, results) is stored once, and every distinct job (full
+ * name and display name) and category (UUID and name) once as a pair of string codes. Rows refer to those by int code
+ * and keep numbers in primitive arrays, so a record costs 48 bytes of columns however long its names are, instead of
+ * an object plus its own copies of every string.
+ * <p>
+ * There is a single writer: callers must hold the store's monitor to {@link #append} or {@link #remove}. Readers use
+ * an immutable {@link Snapshot}, which is republished with a volatile write after every change. The writer only ever
+ * writes past the published size or into fresh arrays, so readers never see a partially written row.
+ */
+final class CompactRecordStore {
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    private static final int NULL = -1;
+
+    private final Map<String, Integer> codes = new HashMap<>();
+    private String[] strings = new String[64];
+    private int stringCount;
+
+    private final Map<Long, Integer> pairCodes = new HashMap<>();
+    private int[] pairFirst = new int[64];
+    private int[] pairSecond = new int[64];
+    private int pairCount;
+
+    private long[] ids = new long[INITIAL_CAPACITY];
+    private int[] jobs = new int[INITIAL_CAPACITY];
+    private int[] buildNumbers = new int[INITIAL_CAPACITY];
+    private int[] categories = new int[INITIAL_CAPACITY];
+    private int[] results = new int[INITIAL_CAPACITY];
+    private long[] timestamps = new long[INITIAL_CAPACITY];
+    private long[] startTimes = new long[INITIAL_CAPACITY];
+    private long[] durations = new long[INITIAL_CAPACITY];
+    private int size;
+    private long appended;
+
+    private volatile Snapshot snapshot = new Snapshot(this);
+
+    Snapshot snapshot() {
+        return snapshot;
+    }
+
+    void append(BuildHistory.BuildRecord r) {
+        if (size == ids.length) {
+            grow(size + (size >> 1));
+        }
+        ids[size] = r.getId();
+        jobs[size] = encode(r.getJobFullName(), r.getJobName());
+        buildNumbers[size] = r.getBuildNumber();
+        categories[size] = encode(r.getCategoryUuid(), r.getCategoryName());
+        results[size] = encode(r.getResult());
+        timestamps[size] = r.getTimestamp();
+        startTimes[size] = r.getStartTime();
+        durations[size] = r.getDuration();
+        size++;
+        appended++;
+        snapshot = new Snapshot(this);
+    }
+
+    /**
+     * Removes the given rows of the current snapshot, compacting the columns and the dictionary into fresh arrays.
+     */
+    void remove(BitSet rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        Snapshot old = snapshot;
+        codes.clear();
+        strings = new String[Math.max(64, old.stringCount)];
+        stringCount = 0;
+        pairCodes.clear();
+        pairFirst = new int[Math.max(64, old.pairCount)];
+        pairSecond = new int[pairFirst.length];
+        pairCount = 0;
+        int capacity = Math.max(INITIAL_CAPACITY, old.size - rows.cardinality());
+        ids = new long[capacity];
+        jobs = new int[capacity];
+        buildNumbers = new int[capacity];
+        categories = new int[capacity];
+        results = new int[capacity];
+        timestamps = new long[capacity];
+        startTimes = new long[capacity];
+        durations = new long[capacity];
+        size = 0;
+        for (int row = rows.nextClearBit(0); row < old.size; row = rows.nextClearBit(row + 1)) {
+            ids[size] = old.ids[row];
+            jobs[size] = encode(old.first(old.jobs[row]), old.second(old.jobs[row]));
+            buildNumbers[size] = old.buildNumbers[row];
+            categories[size] = encode(old.first(old.categories[row]), old.second(old.categories[row]));
+            results[size] = encode(old.string(old.results[row]));
+            timestamps[size] = old.timestamps[row];
+            startTimes[size] = old.startTimes[row];
+            durations[size] = old.durations[row];
+            size++;
+        }
+        snapshot = new Snapshot(this);
+    }
+
+    private int encode(String s) {
+        if (s == null) {
+            return NULL;
+        }
+        Integer code = codes.get(s);
+        if (code != null) {
+            return code;
+        }
+        if (stringCount == strings.length) {
+            strings = Arrays.copyOf(strings, stringCount * 2);
+        }
+        strings[stringCount] = s;
+        codes.put(s, stringCount);
+        return stringCount++;
+    }
+
+    private int encode(String first, String second) {
+        int a = encode(first);
+        int b = encode(second);
+        Long key = ((long) a << 32) | (b & 0xffffffffL);
+        Integer code = pairCodes.get(key);
+        if (code != null) {
+            return code;
+        }
+        if (pairCount == pairFirst.length) {
+            pairFirst = Arrays.copyOf(pairFirst, pairCount * 2);
+            pairSecond = Arrays.copyOf(pairSecond, pairCount * 2);
+        }
+        pairFirst[pairCount] = a;
+        pairSecond[pairCount] = b;
+        pairCodes.put(key, pairCount);
+        return pairCount++;
+    }
+
+    private void grow(int capacity) {
+        ids = Arrays.copyOf(ids, capacity);
+        jobs = Arrays.copyOf(jobs, capacity);
+        buildNumbers = Arrays.copyOf(buildNumbers, capacity);
+        categories = Arrays.copyOf(categories, capacity);
+        results = Arrays.copyOf(results, capacity);
+        timestamps = Arrays.copyOf(timestamps, capacity);
+        startTimes = Arrays.copyOf(startTimes, capacity);
+        durations = Arrays.copyOf(durations, capacity);
+    }
+
+    /**
+     * Immutable, consistent view of the store at one point in time. Rows are numbered oldest first.
+     */
+    static final class Snapshot {
+        private final String[] strings;
+        private final int stringCount;
+        private final int[] pairFirst;
+        private final int[] pairSecond;
+        private final int pairCount;
+        private final long[] ids;
+        private final int[] jobs;
+        private final int[] buildNumbers;
+        private final int[] categories;
+        private final int[] results;
+        private final long[] timestamps;
+        private final long[] startTimes;
+        private final long[] durations;
+        private final int size;
+        private final long appended;
+
+        private Snapshot(CompactRecordStore store) {
+            this.strings = store.strings;
+            this.stringCount = store.stringCount;
+            this.pairFirst = store.pairFirst;
+            this.pairSecond = store.pairSecond;
+            this.pairCount = store.pairCount;
+            this.ids = store.ids;
+            this.jobs = store.jobs;
+            this.buildNumbers = store.buildNumbers;
+            this.categories = store.categories;
+            this.results = store.results;
+            this.timestamps = store.timestamps;
+            this.startTimes = store.startTimes;
+            this.durations = store.durations;
+            this.size = store.size;
+            this.appended = store.appended;
+        }
+
+        int size() {
+            return size;
+        }
+
+        /**
+         * @return the number of rows ever appended to the store, including removed ones
+         */
+        long appended() {
+            return appended;
+        }
+
+        long id(int row) {
+            return ids[row];
+        }
+
+        long timestamp(int row) {
+            return timestamps[row];
+        }
+
+        String categoryUuid(int row) {
+            return first(categories[row]);
+        }
+
+        private String string(int code) {
+            return code == NULL ? null : strings[code];
+        }
+
+        private String first(int pair) {
+            return string(pairFirst[pair]);
+        }
+
+        private String second(int pair) {
+            return string(pairSecond[pair]);
+        }
+
+        BuildHistory.BuildRecord get(int row) {
+            return new BuildHistory.BuildRecord(
+                    ids[row],
+                    first(jobs[row]),
+                    second(jobs[row]),
+                    buildNumbers[row],
+                    first(categories[row]),
+                    second(categories[row]),
+                    timestamps[row],
+                    string(results[row]),
+                    startTimes[row],
+                    durations[row]);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package io.jenkins.plugins.sample;
+
+import hudson.Extension;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import jenkins.model.Jenkins;
+import org.jenkinsci.Symbol;
+import org.kohsuke.stapler.DataBoundConstructor;
+
+/**
+ * Keeps the history in a {@link HistoryLog} under {@code JENKINS_HOME/onboarding-history}.
+ * <p>
+ * Queries skip blocks by id and time range but filter categories and jobs by decoding, so aggregates and lookups of
+ * rare categories scan the log. {@link H2HistoryStorage} indexes those.
+ */
+public class FileHistoryStorage extends HistoryStorage {
+
+    private transient File dir;
+
+    private transient HistoryLog log;
+
+    @DataBoundConstructor
+    public FileHistoryStorage() {}
+
+    FileHistoryStorage(File dir) {
+        this.dir = dir;
+    }
+
+    private synchronized HistoryLog log() throws IOException {
+        if (log == null) {
+            log = new HistoryLog(dir != null ? dir : new File(Jenkins.get().getRootDir(), "onboarding-history"));
+        }
+        return log;
+    }
+
+    @Override
+    public void append(List<BuildHistory.BuildRecord> records) throws IOException {
+        log().append(records);
+    }
+
+    @Override
+    public List<BuildHistory.BuildRecord> query(Query query) throws IOException {
+        return log().read(query);
+    }
+
+    @Override
+    public Map<String, Long> countByCategory(long from, long to) throws IOException {
+        return log().countByCategory(from, to);
+    }
+
+    @Override
+    public List<BuildHistory.BuildRecord> latest(int limit) throws IOException {
+        return log().readLatest(limit);
+    }
+
+    @Override
+    public long maxId() throws IOException {
+        return log().maxId();
+    }
+
+    @Override
+    public void deleteOlderThan(int maxAgeDays) throws IOException {
+        log().deleteOlderThan(maxAgeDays);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (log != null) {
+            log.close();
+        }
+    }
+
+    @Extension
+    @Symbol("file")
+    public static final class DescriptorImpl extends HistoryStorageDescriptor {
+        @Override
+        public String getDisplayName() {
+            return "Files under JENKINS_HOME";
+        }
+    }
+}
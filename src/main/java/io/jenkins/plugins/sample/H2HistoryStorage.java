@@ -0,0 +1,244 @@
+package io.jenkins.plugins.sample;
+
+import hudson.Extension;
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import jenkins.model.Jenkins;
+import org.h2.jdbcx.JdbcDataSource;
+import org.jenkinsci.Symbol;
+import org.kohsuke.stapler.DataBoundConstructor;
+
+/**
+ * Keeps the history in an embedded H2 database under {@code JENKINS_HOME/onboarding-history/h2}.
+ * <p>
+ * Records are indexed by category, job and timestamp, each together with the id used as paging cursor, so lookups and
+ * aggregates over years of history do not scan it. A single connection is shared and used by one caller at a time.
+ */
+public class H2HistoryStorage extends HistoryStorage {
+
+    private static final String COLUMNS = "id, job_full_name, job_name, build_number, category_uuid, category_name, ts,"
+            + " result, start_time, duration";
+
+    private transient File dir;
+
+    private transient Connection connection;
+
+    @DataBoundConstructor
+    public H2HistoryStorage() {}
+
+    H2HistoryStorage(File dir) {
+        this.dir = dir;
+    }
+
+    private Connection connection() throws SQLException {
+        if (connection == null) {
+            File base = dir != null ? dir : new File(Jenkins.get().getRootDir(), "onboarding-history/h2");
+            JdbcDataSource dataSource = new JdbcDataSource();
+            dataSource.setURL("jdbc:h2:file:" + new File(base, "history").getAbsolutePath());
+            Connection c = dataSource.getConnection();
+            try (Statement s = c.createStatement()) {
+                s.execute("CREATE TABLE IF NOT EXISTS onboarding_record ("
+                        + "id BIGINT PRIMARY KEY, job_full_name VARCHAR, job_name VARCHAR, build_number INT,"
+                        + " category_uuid VARCHAR, category_name VARCHAR, ts BIGINT NOT NULL, result VARCHAR,"
+                        + " start_time BIGINT, duration BIGINT)");
+                s.execute("CREATE INDEX IF NOT EXISTS onboarding_record_category"
+                        + " ON onboarding_record(category_uuid, id)");
+                s.execute("CREATE INDEX IF NOT EXISTS onboarding_record_job ON onboarding_record(job_full_name, id)");
+                s.execute("CREATE INDEX IF NOT EXISTS onboarding_record_ts ON onboarding_record(ts, category_uuid)");
+            } catch (SQLException e) {
+                c.close();
+                throw e;
+            }
+            connection = c;
+        }
+        return connection;
+    }
+
+    @Override
+    public synchronized void append(List<BuildHistory.BuildRecord> records) throws IOException {
+        if (records.isEmpty()) {
+            return;
+        }
+        try {
+            Connection c = connection();
+            c.setAutoCommit(false);
+            try (PreparedStatement ps = c.prepareStatement(
+                    "MERGE INTO onboarding_record (" + COLUMNS + ") KEY (id) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)")) {
+                for (BuildHistory.BuildRecord r : records) {
+                    ps.setLong(1, r.getId());
+                    setString(ps, 2, r.getJobFullName());
+                    setString(ps, 3, r.getJobName());
+                    ps.setInt(4, r.getBuildNumber());
+                    setString(ps, 5, r.getCategoryUuid());
+                    setString(ps, 6, r.getCategoryName());
+                    ps.setLong(7, r.getTimestamp());
+                    setString(ps, 8, r.getResult());
+                    ps.setLong(9, r.getStartTime());
+                    ps.setLong(10, r.getDuration());
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                c.commit();
+            } catch (SQLException e) {
+                c.rollback();
+                throw e;
+            } finally {
+                c.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            throw new IOException("Failed to store onboarding history", e);
+        }
+    }
+
+    private static void setString(PreparedStatement ps, int index, String value) throws SQLException {
+        if (value == null) {
+            ps.setNull(index, Types.VARCHAR);
+        } else {
+            ps.setString(index, value);
+        }
+    }
+
+    @Override
+    public synchronized List<BuildHistory.BuildRecord> query(Query query) throws IOException {
+        StringBuilder sql = new StringBuilder("SELECT " + COLUMNS + " FROM onboarding_record WHERE id < ?");
+        List<Object> params = new ArrayList<>();
+        params.add(query.getBefore());
+        if (query.getAfter() > 0) {
+            sql.append(" AND id > ?");
+            params.add(query.getAfter());
+        }
+        if (query.getCategoryUuid() != null) {
+            sql.append(" AND category_uuid = ?");
+            params.add(query.getCategoryUuid());
+        }
+        if (query.getJobFullName() != null) {
+            sql.append(" AND job_full_name = ?");
+            params.add(query.getJobFullName());
+        }
+        if (query.getFrom() > 0) {
+            sql.append(" AND ts >= ?");
+            params.add(query.getFrom());
+        }
+        if (query.getTo() < Long.MAX_VALUE) {
+            sql.append(" AND ts < ?");
+            params.add(query.getTo());
+        }
+        sql.append(" ORDER BY id DESC LIMIT ?");
+        params.add(query.getLimit());
+        try (PreparedStatement ps = connection().prepareStatement(sql.toString())) {
+            for (int i = 0; i < params.size(); i++) {
+                ps.setObject(i + 1, params.get(i));
+            }
+            return read(ps);
+        } catch (SQLException e) {
+            throw new IOException("Failed to query onboarding history", e);
+        }
+    }
+
+    private static List<BuildHistory.BuildRecord> read(PreparedStatement ps) throws SQLException {
+        List<BuildHistory.BuildRecord> records = new ArrayList<>();
+        try (ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                records.add(new BuildHistory.BuildRecord(
+                        rs.getLong(1),
+                        rs.getString(2),
+                        rs.getString(3),
+                        rs.getInt(4),
+                        rs.getString(5),
+                        rs.getString(6),
+                        rs.getLong(7),
+                        rs.getString(8),
+                        rs.getLong(9),
+                        rs.getLong(10)));
+            }
+        }
+        return records;
+    }
+
+    @Override
+    public synchronized Map<String, Long> countByCategory(long from, long to) throws IOException {
+        try (PreparedStatement ps = connection()
+                .prepareStatement("SELECT category_uuid, COUNT(*) FROM onboarding_record"
+                        + " WHERE ts >= ? AND ts < ? AND category_uuid IS NOT NULL GROUP BY category_uuid")) {
+            ps.setLong(1, from);
+            ps.setLong(2, to);
+            Map<String, Long> counts = new HashMap<>();
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    counts.put(rs.getString(1), rs.getLong(2));
+                }
+            }
+            return counts;
+        } catch (SQLException e) {
+            throw new IOException("Failed to aggregate onboarding history", e);
+        }
+    }
+
+    @Override
+    public synchronized List<BuildHistory.BuildRecord> latest(int limit) throws IOException {
+        try (PreparedStatement ps = connection()
+                .prepareStatement("SELECT " + COLUMNS + " FROM onboarding_record ORDER BY id DESC LIMIT ?")) {
+            ps.setInt(1, limit > 0 ? limit : Integer.MAX_VALUE);
+            List<BuildHistory.BuildRecord> records = read(ps);
+            Collections.reverse(records);
+            return records;
+        } catch (SQLException e) {
+            throw new IOException("Failed to read onboarding history", e);
+        }
+    }
+
+    @Override
+    public synchronized long maxId() throws IOException {
+        try (Statement s = connection().createStatement();
+                ResultSet rs = s.executeQuery("SELECT COALESCE(MAX(id), 0) FROM onboarding_record")) {
+            rs.next();
+            return rs.getLong(1);
+        } catch (SQLException e) {
+            throw new IOException("Failed to read onboarding history", e);
+        }
+    }
+
+    @Override
+    public synchronized void deleteOlderThan(int maxAgeDays) throws IOException {
+        try (PreparedStatement ps = connection().prepareStatement("DELETE FROM onboarding_record WHERE ts < ?")) {
+            ps.setLong(1, System.currentTimeMillis() - TimeUnit.DAYS.toMillis(maxAgeDays));
+            ps.executeUpdate();
+        } catch (SQLException e) {
+            throw new IOException("Failed to delete old onboarding history", e);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (connection != null) {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                throw new IOException(e);
+            } finally {
+                connection = null;
+            }
+        }
+    }
+
+    @Extension
+    @Symbol("h2")
+    public static final class DescriptorImpl extends HistoryStorageDescriptor {
+        @Override
+        public String getDisplayName() {
+            return "Embedded H2 database";
+        }
+    }
+}
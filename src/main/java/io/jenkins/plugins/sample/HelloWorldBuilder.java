@@ -1,9 +1,13 @@
 package io.jenkins.plugins.sample;
 
+import edu.umd.cs.findbugs.annotations.NonNull;
 import hudson.Extension;
 import hudson.FilePath;
 import hudson.Launcher;
+import hudson.model.AbstractBuild;
 import hudson.model.AbstractProject;
+import hudson.model.Action;
+import hudson.model.Project;
 import hudson.model.Run;
 import hudson.model.TaskListener;
 import hudson.tasks.BuildStepDescriptor;
@@ -11,7 +15,11 @@ import hudson.tasks.Builder;
 import hudson.util.FormValidation;
 import jakarta.servlet.ServletException;
 import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import jenkins.model.TransientActionFactory;
 import jenkins.tasks.SimpleBuildStep;
+import jenkins.util.SystemProperties;
 import org.jenkinsci.Symbol;
 import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.DataBoundSetter;
@@ -19,6 +27,13 @@ import org.kohsuke.stapler.QueryParameter;
 
 public class HelloWorldBuilder extends Builder implements SimpleBuildStep {
 
+    /**
+     * Whether builds of freestyle projects get their {@link HelloWorldAction} from {@link GreetingActionFactory}
+     * instead of keeping their own in build.xml. Off by default; non-final for tests and the script console.
+     */
+    static boolean TRANSIENT_ACTION =
+            SystemProperties.getBoolean(HelloWorldBuilder.class.getName() + ".transientAction");
+
     private final String name;
     private boolean useFrench;
 
@@ -43,11 +58,58 @@ public class HelloWorldBuilder extends Builder implements SimpleBuildStep {
     @Override
     public void perform(Run<?, ?> run, FilePath workspace, Launcher launcher, TaskListener listener)
             throws InterruptedException, IOException {
-        run.addAction(new HelloWorldAction(name));
-        if (useFrench) {
-            listener.getLogger().println("Bonjour, " + name + "!");
-        } else {
-            listener.getLogger().println("Hello, " + name + "!");
+        long start = System.nanoTime();
+        boolean succeeded = false;
+        try {
+            if (!TRANSIENT_ACTION || !(run.getParent() instanceof Project)) {
+                run.addAction(new HelloWorldAction(name));
+            }
+            if (useFrench) {
+                listener.getLogger().println("Bonjour, " + name + "!");
+            } else {
+                listener.getLogger().println("Hello, " + name + "!");
+            }
+            succeeded = true;
+        } finally {
+            OnboardingMetrics.HELLO_PERFORM.observe(start, succeeded);
+        }
+    }
+
+    /**
+     * With {@link #TRANSIENT_ACTION}, adds the greeting to builds of freestyle projects from the project's
+     * configuration, so the action is not written to every build.xml and loading a build does not deserialize it.
+     * Builds that have a persisted action keep it. Opting in accepts that every build of a project that now has the
+     * step shows the name configured now: also builds from before the step was added or renamed, and builds that
+     * failed before reaching it.
+     */
+    @Extension
+    public static final class GreetingActionFactory extends TransientActionFactory<AbstractBuild> {
+
+        @Override
+        public Class<AbstractBuild> type() {
+            return AbstractBuild.class;
+        }
+
+        @NonNull
+        @Override
+        @SuppressWarnings("deprecation")
+        public Collection<? extends Action> createFor(@NonNull AbstractBuild target) {
+            if (!TRANSIENT_ACTION || !(target.getProject() instanceof Project<?, ?> project)) {
+                return Collections.emptySet();
+            }
+            HelloWorldBuilder builder = project.getBuildersList().get(HelloWorldBuilder.class);
+            if (builder == null) {
+                return Collections.emptySet();
+            }
+            // persisted actions only; getAction(Class) would call this factory again
+            for (Action a : target.getActions()) {
+                if (a instanceof HelloWorldAction) {
+                    return Collections.emptySet();
+                }
+            }
+            HelloWorldAction action = new HelloWorldAction(builder.getName());
+            action.onLoad(target);
+            return Collections.singleton(action);
         }
     }
 
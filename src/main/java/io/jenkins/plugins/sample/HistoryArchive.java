@@ -0,0 +1,75 @@
+package io.jenkins.plugins.sample;
+
+import hudson.XmlFile;
+import hudson.util.XStream2;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+/**
+ * XML archive segments written by earlier versions when records were rotated out of the in-memory window.
+ * <p>
+ * They are only read once, to migrate their records into the {@link HistoryLog}, and deleted afterwards.
+ */
+final class HistoryArchive {
+
+    private static final Logger LOGGER = Logger.getLogger(HistoryArchive.class.getName());
+
+    private static final Pattern SEGMENT_NAME = Pattern.compile("segment-(\\d+)-(\\d+)\\.xml");
+
+    private static final XStream2 XSTREAM = new XStream2();
+
+    static {
+        XSTREAM.alias("onboarding-history-segment", Segment.class);
+        XSTREAM.alias("record", BuildHistory.BuildRecord.class);
+    }
+
+    private final File dir;
+
+    HistoryArchive(File dir) {
+        this.dir = dir;
+    }
+
+    /**
+     * @return the records of all readable segments, in no particular order
+     */
+    List<BuildHistory.BuildRecord> readAll() {
+        List<BuildHistory.BuildRecord> records = new ArrayList<>();
+        for (File f : segmentFiles()) {
+            try {
+                Segment segment = (Segment) new XmlFile(XSTREAM, f).read();
+                if (segment.records != null) {
+                    records.addAll(segment.records);
+                }
+            } catch (IOException | RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Failed to read " + f, e);
+            }
+        }
+        return records;
+    }
+
+    void delete() {
+        for (File f : segmentFiles()) {
+            if (!f.delete()) {
+                LOGGER.log(Level.WARNING, "Failed to delete {0}", f);
+            }
+        }
+    }
+
+    private List<File> segmentFiles() {
+        File[] files = dir.listFiles((d, name) -> SEGMENT_NAME.matcher(name).matches());
+        return files != null ? List.of(files) : List.of();
+    }
+
+    private static final class Segment {
+        private final List<BuildHistory.BuildRecord> records;
+
+        Segment(List<BuildHistory.BuildRecord> records) {
+            this.records = records;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package io.jenkins.plugins.sample;
+
+import java.io.IOException;
+import java.io.Writer;
+import net.sf.json.JSONObject;
+
+/**
+ * Writes the matching history records, newest first, as NDJSON or CSV.
+ * <p>
+ * Records are fetched a page at a time through {@link BuildHistory#getPage(HistoryStorage.Query)} and written
+ * before the next page is read, so an export of the whole history needs no more memory than one page.
+ */
+final class HistoryExport {
+
+    static final int PAGE_SIZE = 1000;
+
+    private static final String CSV_HEADER =
+            "id,jobFullName,jobName,buildNumber,categoryUuid,categoryName,timestamp,result,startTime,duration";
+
+    private HistoryExport() {}
+
+    /**
+     * @param query the criteria, with {@link #PAGE_SIZE} as limit; its cursor is ignored
+     * @return the number of records written
+     */
+    static long write(BuildHistory history, HistoryStorage.Query query, CategoryImport.Format format, Writer out)
+            throws IOException {
+        history.awaitLoaded();
+        if (format == CategoryImport.Format.CSV) {
+            out.write(CSV_HEADER);
+            out.write('\n');
+        }
+        long written = 0;
+        Long before = Long.MAX_VALUE;
+        while (before != null) {
+            BuildHistory.Page page = history.getPage(query.withBefore(before));
+            for (BuildHistory.BuildRecord r : page.getRecords()) {
+                if (format == CategoryImport.Format.CSV) {
+                    writeCsv(r, out);
+                } else {
+                    writeJson(r, out);
+                }
+                written++;
+            }
+            out.flush();
+            before = page.getNext();
+        }
+        return written;
+    }
+
+    private static void writeJson(BuildHistory.BuildRecord r, Writer out) throws IOException {
+        JSONObject o = new JSONObject();
+        o.put("id", r.getId());
+        o.put("jobFullName", r.getJobFullName());
+        o.put("jobName", r.getJobName());
+        o.put("buildNumber", r.getBuildNumber());
+        o.put("categoryUuid", r.getCategoryUuid());
+        o.put("categoryName", r.getCategoryName());
+        o.put("timestamp", r.getTimestamp());
+        o.put("result", r.getResult());
+        o.put("startTime", r.getStartTime());
+        o.put("duration", r.getDuration());
+        out.write(o.toString());
+        out.write('\n');
+    }
+
+    private static void writeCsv(BuildHistory.BuildRecord r, Writer out) throws IOException {
+        out.write(String.valueOf(r.getId()));
+        out.write(',');
+        out.write(csv(r.getJobFullName()));
+        out.write(',');
+        out.write(csv(r.getJobName()));
+        out.write(',');
+        out.write(String.valueOf(r.getBuildNumber()));
+        out.write(',');
+        out.write(csv(r.getCategoryUuid()));
+        out.write(',');
+        out.write(csv(r.getCategoryName()));
+        out.write(',');
+        out.write(String.valueOf(r.getTimestamp()));
+        out.write(',');
+        out.write(csv(r.getResult()));
+        out.write(',');
+        out.write(String.valueOf(r.getStartTime()));
+        out.write(',');
+        out.write(String.valueOf(r.getDuration()));
+        out.write('\n');
+    }
+
+    private static String csv(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
@@ -0,0 +1,339 @@
+package io.jenkins.plugins.sample;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import jenkins.util.Timer;
+
+/**
+ * In-memory inverted index of the whole build history: record ids by job name word, by category and by hour.
+ * <p>
+ * Posting lists are sorted arrays of record ids. Records arrive nearly in id order, so adding one is an append or a
+ * short shift; a bulk load appends in any order and sorts once at the end. Words of a query match word prefixes
+ * through the sorted word dictionary. A search narrows the ids to the range covered by the hours of its time range,
+ * then walks the smallest posting list from the newest id down and keeps the ids found in all others. The index only
+ * yields candidate ids: callers fetch the records and check them.
+ * <p>
+ * {@link #add} never takes the lock, so recording a build does not wait for a bulk load or a search: new records go
+ * to a concurrent queue, which searches drain before looking, and a background task drains once it gets long.
+ */
+final class HistoryIndex {
+
+    private static final long BUCKET_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    /** The queue of added records is drained in the background once it is this long. */
+    static final int DRAIN_BATCH = 1024;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final TreeMap<String, Postings> words = new TreeMap<>();
+
+    private final Map<String, Postings> categories = new HashMap<>();
+
+    /** Lowest and highest id recorded in each hour, by hours since the epoch. */
+    private final TreeMap<Long, long[]> buckets = new TreeMap<>();
+
+    /** Records added but not indexed yet. Only {@link #drain()} removes from it. */
+    private final ConcurrentLinkedQueue<BuildHistory.BuildRecord> incoming = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger incomingSize = new AtomicInteger();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+
+    /**
+     * @return the distinct lower-case words of a job name or search text
+     */
+    static List<String> words(String text) {
+        if (text == null) {
+            return List.of();
+        }
+        Set<String> words = new LinkedHashSet<>();
+        for (String word : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+        return new ArrayList<>(words);
+    }
+
+    /**
+     * @return whether every term starts a word of the record's job name
+     */
+    static boolean matches(List<String> terms, BuildHistory.BuildRecord r) {
+        List<String> jobWords = words(r.getJobFullName());
+        for (String term : terms) {
+            if (jobWords.stream().noneMatch(w -> w.startsWith(term))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    void add(BuildHistory.BuildRecord r) {
+        incoming.add(r);
+        if (incomingSize.incrementAndGet() >= DRAIN_BATCH && drainScheduled.compareAndSet(false, true)) {
+            Timer.get().submit(() -> {
+                drainScheduled.set(false);
+                lock.writeLock().lock();
+                try {
+                    drain();
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            });
+        }
+    }
+
+    /**
+     * Indexes the queued records. The caller holds the write lock.
+     */
+    private void drain() {
+        BuildHistory.BuildRecord r;
+        while ((r = incoming.poll()) != null) {
+            incomingSize.decrementAndGet();
+            index(r, true);
+        }
+    }
+
+    /**
+     * Takes the read lock, after indexing the queued records if there are any.
+     */
+    private void lockForReading() {
+        if (!incoming.isEmpty()) {
+            lock.writeLock().lock();
+            try {
+                drain();
+                lock.readLock().lock();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } else {
+            lock.readLock().lock();
+        }
+    }
+
+    /**
+     * Adds records in any order; {@link #sort()} must be called before the index is searched.
+     */
+    void addUnsorted(List<BuildHistory.BuildRecord> records) {
+        lock.writeLock().lock();
+        try {
+            for (BuildHistory.BuildRecord r : records) {
+                index(r, false);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void sort() {
+        lock.writeLock().lock();
+        try {
+            words.values().forEach(Postings::sort);
+            categories.values().forEach(Postings::sort);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void index(BuildHistory.BuildRecord r, boolean sorted) {
+        long id = r.getId();
+        for (String word : words(r.getJobFullName())) {
+            words.computeIfAbsent(word, k -> new Postings()).add(id, sorted);
+        }
+        if (r.getCategoryUuid() != null) {
+            categories.computeIfAbsent(r.getCategoryUuid(), k -> new Postings()).add(id, sorted);
+        }
+        long[] range = buckets.computeIfAbsent(r.getTimestamp() / BUCKET_MILLIS, k -> new long[] {id, id});
+        range[0] = Math.min(range[0], id);
+        range[1] = Math.max(range[1], id);
+    }
+
+    /**
+     * Drops the ids of records older than the cutoff, as far as the hours tell.
+     */
+    void removeOlderThan(long cutoff) {
+        lock.writeLock().lock();
+        try {
+            drain();
+            NavigableMap<Long, long[]> expired = buckets.headMap(cutoff / BUCKET_MILLIS, false);
+            if (expired.isEmpty()) {
+                return;
+            }
+            expired.clear();
+            long lowest = Long.MAX_VALUE;
+            for (long[] range : buckets.values()) {
+                lowest = Math.min(lowest, range[0]);
+            }
+            long bound = lowest;
+            words.values().removeIf(p -> p.removeBelow(bound));
+            categories.values().removeIf(p -> p.removeBelow(bound));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @param terms word prefixes that must all occur in the job name
+     * @param categoryUuid the category, or {@code null} for any
+     * @param to exclusive upper bound of the timestamp, {@link Long#MAX_VALUE} for none
+     * @return up to {@code limit} candidate ids below {@code before}, newest first, or {@code null} if neither terms
+     *     nor a category were given
+     */
+    long[] search(List<String> terms, String categoryUuid, long from, long to, long before, int limit) {
+        lockForReading();
+        try {
+            if (terms.isEmpty() && categoryUuid == null) {
+                return null;
+            }
+            long low = Long.MIN_VALUE;
+            long high = before;
+            if (from > 0 || to < Long.MAX_VALUE) {
+                NavigableMap<Long, long[]> hours = to < Long.MAX_VALUE
+                        ? buckets.subMap(from / BUCKET_MILLIS, true, (to - 1) / BUCKET_MILLIS, true)
+                        : buckets.tailMap(from / BUCKET_MILLIS, true);
+                if (hours.isEmpty()) {
+                    return new long[0];
+                }
+                long min = Long.MAX_VALUE;
+                long max = Long.MIN_VALUE;
+                for (long[] range : hours.values()) {
+                    min = Math.min(min, range[0]);
+                    max = Math.max(max, range[1]);
+                }
+                low = min;
+                high = Math.min(high, max + 1);
+            }
+            List<Postings> sets = new ArrayList<>();
+            if (categoryUuid != null) {
+                Postings p = categories.get(categoryUuid);
+                if (p == null) {
+                    return new long[0];
+                }
+                sets.add(p);
+            }
+            for (String term : terms) {
+                Postings p = union(words.subMap(term, true, term + Character.MAX_VALUE, false));
+                if (p == null) {
+                    return new long[0];
+                }
+                sets.add(p);
+            }
+            Postings driver = sets.get(0);
+            for (Postings p : sets) {
+                if (p.size < driver.size) {
+                    driver = p;
+                }
+            }
+            long[] found = new long[Math.min(limit, driver.size)];
+            int count = 0;
+            for (int i = driver.lowerIndex(high) - 1; i >= 0 && count < found.length; i--) {
+                long id = driver.ids[i];
+                if (id < low) {
+                    break;
+                }
+                boolean inAll = true;
+                for (Postings p : sets) {
+                    if (p != driver && !p.contains(id)) {
+                        inAll = false;
+                        break;
+                    }
+                }
+                if (inAll) {
+                    found[count++] = id;
+                }
+            }
+            return Arrays.copyOf(found, count);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the posting lists merged into one, or {@code null} if there are none
+     */
+    private static Postings union(Map<String, Postings> lists) {
+        if (lists.isEmpty()) {
+            return null;
+        }
+        if (lists.size() == 1) {
+            return lists.values().iterator().next();
+        }
+        Postings union = new Postings();
+        for (Postings p : lists.values()) {
+            for (int i = 0; i < p.size; i++) {
+                union.add(p.ids[i], false);
+            }
+        }
+        union.sort();
+        return union;
+    }
+
+    /**
+     * Growable sorted array of record ids.
+     */
+    private static final class Postings {
+        long[] ids = new long[4];
+        int size;
+
+        void add(long id, boolean sorted) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size + (size >> 1));
+            }
+            int at = size;
+            if (sorted) {
+                while (at > 0 && ids[at - 1] > id) {
+                    at--;
+                }
+                System.arraycopy(ids, at, ids, at + 1, size - at);
+            }
+            ids[at] = id;
+            size++;
+        }
+
+        /** Sorts and drops duplicates, e.g. of a word occurring in several job names. */
+        void sort() {
+            Arrays.sort(ids, 0, size);
+            int distinct = 0;
+            for (int i = 0; i < size; i++) {
+                if (distinct == 0 || ids[i] != ids[distinct - 1]) {
+                    ids[distinct++] = ids[i];
+                }
+            }
+            size = distinct;
+        }
+
+        boolean contains(long id) {
+            return Arrays.binarySearch(ids, 0, size, id) >= 0;
+        }
+
+        /**
+         * @return the number of ids lower than {@code id}
+         */
+        int lowerIndex(long id) {
+            int i = Arrays.binarySearch(ids, 0, size, id);
+            return i >= 0 ? i : -i - 1;
+        }
+
+        /**
+         * @return whether the list became empty
+         */
+        boolean removeBelow(long bound) {
+            int from = lowerIndex(bound);
+            System.arraycopy(ids, from, ids, 0, size - from);
+            size -= from;
+            return size == 0;
+        }
+    }
+}
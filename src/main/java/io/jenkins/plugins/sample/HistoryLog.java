@@ -0,0 +1,630 @@
+package io.jenkins.plugins.sample;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+import jenkins.util.SystemProperties;
+
+/**
+ * Append-only binary log of all onboarding history records.
+ * <p>
+ * The log is a directory of segment files named after the first record id they hold. Each segment starts with a
+ * header of magic number, format {@link #VERSION}, first id and a CRC32 of those, followed by records framed as
+ * {@code [payload length][payload CRC32][payload]}. Appending writes new frames at the end of the newest segment and
+ * never rewrites existing bytes; a segment is sealed once it exceeds {@link #SEGMENT_BYTES}.
+ * <p>
+ * Segments are read through memory-mapped buffers. Each has a sparse index of every {@link #INDEX_INTERVAL}th frame
+ * offset, with the id and time range of each block, so reads only decode the blocks they need. Sealing a segment
+ * appends that index as a footer {@code [index][CRC32 of index][offset of index][footer magic]}, so opening a sealed
+ * segment reads its footer only; the frames of a sealed segment are checked as their blocks are decoded. Only the
+ * newest segment is scanned on open to rebuild its index. A torn frame at its end, left by a crash during an append,
+ * is truncated away; a damaged sealed segment is an error.
+ * <p>
+ * Record ids ascend within a log up to the reordering of builds that finish at the same moment.
+ */
+final class HistoryLog {
+
+    private static final Logger LOGGER = Logger.getLogger(HistoryLog.class.getName());
+
+    private static final int MAGIC = 0x4F42484C; // "OBHL"
+
+    /** Segments of version 1 were sealed without a footer. */
+    static final int VERSION = 2;
+
+    private static final int FOOTER_MAGIC = 0x4F424849; // "OBHI"
+
+    private static final int HEADER_SIZE = 20;
+
+    private static final int FRAME_OVERHEAD = 8;
+
+    /** Frame count, highest id, newest timestamp and number of blocks. */
+    private static final int FOOTER_FIXED = 24;
+
+    private static final int FOOTER_BLOCK = 5 * Long.BYTES;
+
+    /** Index checksum, index offset and footer magic. */
+    private static final int TRAILER_SIZE = 16;
+
+    static final int INDEX_INTERVAL = 128;
+
+    static final long SEGMENT_BYTES =
+            SystemProperties.getLong(HistoryLog.class.getName() + ".segmentBytes", 16L * 1024 * 1024);
+
+    private static final Pattern SEGMENT_NAME = Pattern.compile("history-(\\d+)\\.log");
+
+    private final File dir;
+    private final long segmentBytes;
+
+    /**
+     * Oldest first. Guarded by {@code this}.
+     */
+    private final List<Segment> segments = new ArrayList<>();
+
+    private FileChannel writer;
+
+    HistoryLog(File dir) throws IOException {
+        this(dir, SEGMENT_BYTES);
+    }
+
+    /**
+     * @throws IOException if a sealed segment is damaged
+     */
+    HistoryLog(File dir, long segmentBytes) throws IOException {
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+        File[] files = dir.listFiles((d, name) -> SEGMENT_NAME.matcher(name).matches());
+        if (files == null) {
+            return;
+        }
+        List<File> sorted = new ArrayList<>(List.of(files));
+        sorted.sort(Comparator.comparingLong(HistoryLog::firstId));
+        for (int i = 0; i < sorted.size(); i++) {
+            try {
+                segments.add(Segment.open(sorted.get(i), i == sorted.size() - 1));
+            } catch (IOException e) {
+                throw new IOException("Damaged onboarding history segment " + sorted.get(i), e);
+            }
+        }
+    }
+
+    private static long firstId(File f) {
+        Matcher m = SEGMENT_NAME.matcher(f.getName());
+        return m.matches() ? Long.parseLong(m.group(1)) : 0;
+    }
+
+    synchronized boolean isEmpty() {
+        for (Segment s : segments) {
+            if (s.count > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the highest record id in the log, or 0 if it is empty
+     */
+    synchronized long maxId() {
+        long max = 0;
+        for (Segment s : segments) {
+            max = Math.max(max, s.maxId);
+        }
+        return max;
+    }
+
+    /**
+     * Appends the records, in order, to the newest segment in a single write.
+     */
+    synchronized void append(List<BuildHistory.BuildRecord> records) throws IOException {
+        if (records.isEmpty()) {
+            return;
+        }
+        Segment active = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+        if (active == null || active.sealed || active.length >= segmentBytes) {
+            active = roll(records.get(0).getId());
+        }
+        if (writer == null) {
+            writer = FileChannel.open(active.file.toPath(), StandardOpenOption.WRITE);
+        }
+
+        ByteArrayOutputStream frames = new ByteArrayOutputStream(records.size() * 128);
+        DataOutputStream out = new DataOutputStream(frames);
+        long[] offsets = new long[records.size()];
+        for (int i = 0; i < records.size(); i++) {
+            offsets[i] = active.length + frames.size();
+            byte[] payload = encode(records.get(i));
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            out.writeInt(payload.length);
+            out.writeInt((int) crc.getValue());
+            out.write(payload);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(frames.toByteArray());
+        long position = active.length;
+        while (buffer.hasRemaining()) {
+            position += writer.write(buffer, position);
+        }
+        writer.force(false);
+        for (int i = 0; i < records.size(); i++) {
+            BuildHistory.BuildRecord r = records.get(i);
+            active.indexed(offsets[i], r.getId(), r.getTimestamp());
+        }
+        active.length = position;
+    }
+
+    private Segment roll(long firstId) throws IOException {
+        if (!segments.isEmpty()) {
+            seal(segments.get(segments.size() - 1));
+        }
+        close();
+        Files.createDirectories(dir.toPath());
+        File file = new File(dir, "history-" + firstId + ".log");
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).putLong(firstId);
+        CRC32 crc = new CRC32();
+        crc.update(header.array(), 0, HEADER_SIZE - 4);
+        header.putInt((int) crc.getValue()).flip();
+        try (FileChannel channel = FileChannel.open(
+                file.toPath(), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+            channel.force(true);
+        }
+        Segment segment = new Segment(file);
+        segments.add(segment);
+        return segment;
+    }
+
+    /**
+     * Appends the index of the segment as its footer. The next segment is only created once the footer is on disk.
+     */
+    private void seal(Segment segment) throws IOException {
+        if (segment.sealed) {
+            return;
+        }
+        if (writer == null) {
+            writer = FileChannel.open(segment.file.toPath(), StandardOpenOption.WRITE);
+        }
+        ByteBuffer footer = segment.footer();
+        long position = segment.length;
+        while (footer.hasRemaining()) {
+            position += writer.write(footer, position);
+        }
+        writer.force(true);
+        segment.sealed = true;
+    }
+
+    /**
+     * Returns up to the query's limit of matching records, newest first. Blocks outside the query's id or time range
+     * are skipped using the index.
+     */
+    synchronized List<BuildHistory.BuildRecord> read(HistoryStorage.Query query) throws IOException {
+        long before = query.getBefore();
+        int limit = query.getLimit();
+        Comparator<BuildHistory.BuildRecord> newestFirst =
+                Comparator.comparingLong(BuildHistory.BuildRecord::getId).reversed();
+        List<BuildHistory.BuildRecord> result = new ArrayList<>();
+        scan:
+        for (int i = segments.size() - 1; i >= 0; i--) {
+            Segment s = segments.get(i);
+            ByteBuffer buffer = null;
+            for (int b = s.blocks - 1; b >= 0; b--) {
+                if (s.blockMin[b] >= before
+                        || s.blockMaxTimestamp[b] < query.getFrom()
+                        || s.blockMinTimestamp[b] >= query.getTo()) {
+                    continue;
+                }
+                if (s.blockMax[b] <= query.getAfter()
+                        || result.size() >= limit && s.blockMax[b] < result.get(limit - 1).getId()) {
+                    // blocks are visited newest first, so nothing older is in range or can make it onto the page
+                    break scan;
+                }
+                if (buffer == null) {
+                    buffer = s.map();
+                }
+                for (BuildHistory.BuildRecord r : s.decodeBlock(buffer, b)) {
+                    if (query.matches(r)) {
+                        result.add(r);
+                    }
+                }
+                if (result.size() >= limit) {
+                    result.sort(newestFirst);
+                }
+            }
+        }
+        result.sort(newestFirst);
+        return result.size() > limit ? new ArrayList<>(result.subList(0, limit)) : result;
+    }
+
+    /**
+     * @param limit the number of records to return; 0 for all of them
+     * @return the newest records, oldest first
+     */
+    List<BuildHistory.BuildRecord> readLatest(int limit) throws IOException {
+        List<BuildHistory.BuildRecord> latest =
+                read(new HistoryStorage.Query(Long.MAX_VALUE, limit > 0 ? limit : Integer.MAX_VALUE, null));
+        Collections.reverse(latest);
+        return latest;
+    }
+
+    /**
+     * Counts records per category by decoding every block that overlaps {@code [from, to)}.
+     */
+    synchronized Map<String, Long> countByCategory(long from, long to) throws IOException {
+        Map<String, Long> counts = new HashMap<>();
+        for (Segment s : segments) {
+            ByteBuffer buffer = null;
+            for (int b = 0; b < s.blocks; b++) {
+                if (s.blockMaxTimestamp[b] < from || s.blockMinTimestamp[b] >= to) {
+                    continue;
+                }
+                if (buffer == null) {
+                    buffer = s.map();
+                }
+                for (BuildHistory.BuildRecord r : s.decodeBlock(buffer, b)) {
+                    if (r.getCategoryUuid() != null && r.getTimestamp() >= from && r.getTimestamp() < to) {
+                        counts.merge(r.getCategoryUuid(), 1L, Long::sum);
+                    }
+                }
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Deletes closed segments whose newest record is more than {@code maxAgeDays} days old.
+     */
+    synchronized void deleteOlderThan(int maxAgeDays) {
+        long cutoff = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(maxAgeDays);
+        for (int i = segments.size() - 2; i >= 0; i--) {
+            Segment s = segments.get(i);
+            if (s.maxTimestamp < cutoff) {
+                s.mapped = null;
+                if (s.file.delete()) {
+                    segments.remove(i);
+                } else {
+                    LOGGER.log(Level.WARNING, "Failed to delete {0}", s.file);
+                }
+            }
+        }
+    }
+
+    synchronized void close() throws IOException {
+        if (writer != null) {
+            writer.close();
+            writer = null;
+        }
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+        }
+        return buffer.flip();
+    }
+
+    private static byte[] encode(BuildHistory.BuildRecord r) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeLong(r.getId());
+        out.writeLong(r.getTimestamp());
+        out.writeLong(r.getStartTime());
+        out.writeLong(r.getDuration());
+        out.writeInt(r.getBuildNumber());
+        writeString(out, r.getJobFullName());
+        writeString(out, r.getJobName());
+        writeString(out, r.getCategoryUuid());
+        writeString(out, r.getCategoryName());
+        writeString(out, r.getResult());
+        return bytes.toByteArray();
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(utf8.length);
+        out.write(utf8);
+    }
+
+    private static BuildHistory.BuildRecord decode(ByteBuffer buffer, int position) {
+        ByteBuffer in = buffer.duplicate();
+        in.position(position);
+        long id = in.getLong();
+        long timestamp = in.getLong();
+        long startTime = in.getLong();
+        long duration = in.getLong();
+        int buildNumber = in.getInt();
+        String jobFullName = readString(in);
+        String jobName = readString(in);
+        String categoryUuid = readString(in);
+        String categoryName = readString(in);
+        String result = readString(in);
+        return new BuildHistory.BuildRecord(
+                id, jobFullName, jobName, buildNumber, categoryUuid, categoryName, timestamp, result, startTime,
+                duration);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] utf8 = new byte[length];
+        in.get(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    private static final class Segment {
+        private final File file;
+
+        /**
+         * Bytes of the header and the complete frames.
+         */
+        private long length = HEADER_SIZE;
+
+        /** Whether the footer has been written, so nothing more is appended. */
+        private boolean sealed;
+
+        private int count;
+        private long maxId;
+        private long maxTimestamp = Long.MIN_VALUE;
+
+        private int blocks;
+        private long[] blockOffset = new long[16];
+        private long[] blockMin = new long[16];
+        private long[] blockMax = new long[16];
+        private long[] blockMinTimestamp = new long[16];
+        private long[] blockMaxTimestamp = new long[16];
+
+        private MappedByteBuffer mapped;
+
+        Segment(File file) {
+            this.file = file;
+        }
+
+        /**
+         * Checks the header and reads the index from the footer of a sealed segment, or builds it by checking every
+         * frame of the newest one. Trailing bytes of the newest segment that do not form a complete, valid frame are
+         * truncated.
+         *
+         * @throws IOException if the header is invalid, or a segment other than the newest has a damaged footer or,
+         *     for those written before footers existed, a damaged frame
+         */
+        static Segment open(File file, boolean newest) throws IOException {
+            Segment segment = new Segment(file);
+            long size = file.length();
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+                    throw new IOException("Unexpected size " + size);
+                }
+                ByteBuffer header = readFully(channel, 0, HEADER_SIZE);
+                CRC32 crc = new CRC32();
+                crc.update(header.duplicate().limit(HEADER_SIZE - 4));
+                if (header.getInt(0) != MAGIC) {
+                    throw new IOException("Not an onboarding history segment");
+                }
+                int version = header.getInt(4);
+                if (version != VERSION && version != 1) {
+                    throw new IOException("Unsupported onboarding history format " + version);
+                }
+                if (header.getInt(HEADER_SIZE - 4) != (int) crc.getValue()) {
+                    throw new IOException("Header checksum mismatch");
+                }
+                try {
+                    if (segment.readFooter(channel, size)) {
+                        return segment;
+                    }
+                } catch (IOException e) {
+                    if (!newest) {
+                        throw e;
+                    }
+                    // a crash while sealing; the frames are still intact
+                    LOGGER.log(Level.WARNING, "Rebuilding the index of " + file, e);
+                    segment = new Segment(file);
+                }
+                if (!newest && version == VERSION) {
+                    throw new IOException("Sealed segment has no index");
+                }
+                segment.scan(channel, size, !newest);
+            }
+            if (segment.length < size) {
+                LOGGER.log(Level.WARNING, "Truncating {0} bytes of incomplete records at the end of {1}", new Object[] {
+                    size - segment.length, file
+                });
+                try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+                    channel.truncate(segment.length);
+                }
+            }
+            return segment;
+        }
+
+        /**
+         * Checks every frame and builds the index, up to the first incomplete or damaged frame.
+         *
+         * @param strict whether such a frame is an error rather than the end of the segment
+         */
+        private void scan(FileChannel channel, long size, boolean strict) throws IOException {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            CRC32 crc = new CRC32();
+            long offset = HEADER_SIZE;
+            while (offset + FRAME_OVERHEAD <= size) {
+                int frame = buffer.getInt((int) offset);
+                if (frame < 0 || offset + FRAME_OVERHEAD + frame > size) {
+                    break;
+                }
+                crc.reset();
+                crc.update(buffer.duplicate()
+                        .position((int) offset + FRAME_OVERHEAD)
+                        .limit((int) offset + FRAME_OVERHEAD + frame));
+                if (buffer.getInt((int) offset + 4) != (int) crc.getValue()) {
+                    break;
+                }
+                int payload = (int) offset + FRAME_OVERHEAD;
+                indexed(offset, buffer.getLong(payload), buffer.getLong(payload + Long.BYTES));
+                offset += FRAME_OVERHEAD + frame;
+            }
+            length = offset;
+            if (strict && length < size) {
+                throw new IOException("Damaged record at offset " + length);
+            }
+        }
+
+        /**
+         * @return the index and trailer written when the segment is sealed
+         */
+        ByteBuffer footer() {
+            ByteBuffer footer = ByteBuffer.allocate(FOOTER_FIXED + blocks * FOOTER_BLOCK + TRAILER_SIZE);
+            footer.putInt(count).putLong(maxId).putLong(maxTimestamp).putInt(blocks);
+            for (int b = 0; b < blocks; b++) {
+                footer.putLong(blockOffset[b])
+                        .putLong(blockMin[b])
+                        .putLong(blockMax[b])
+                        .putLong(blockMinTimestamp[b])
+                        .putLong(blockMaxTimestamp[b]);
+            }
+            CRC32 crc = new CRC32();
+            crc.update(footer.array(), 0, footer.position());
+            footer.putInt((int) crc.getValue()).putLong(length).putInt(FOOTER_MAGIC);
+            return footer.flip();
+        }
+
+        /**
+         * @return whether the segment has a footer, whose index is then used
+         * @throws IOException if the footer is damaged
+         */
+        private boolean readFooter(FileChannel channel, long size) throws IOException {
+            if (size < HEADER_SIZE + FOOTER_FIXED + TRAILER_SIZE) {
+                return false;
+            }
+            ByteBuffer trailer = readFully(channel, size - TRAILER_SIZE, TRAILER_SIZE);
+            if (trailer.getInt(TRAILER_SIZE - 4) != FOOTER_MAGIC) {
+                return false;
+            }
+            long frames = trailer.getLong(4);
+            long indexSize = size - TRAILER_SIZE - frames;
+            if (frames < HEADER_SIZE || indexSize < FOOTER_FIXED || (indexSize - FOOTER_FIXED) % FOOTER_BLOCK != 0) {
+                throw new IOException("Invalid index offset " + frames);
+            }
+            ByteBuffer index = readFully(channel, frames, (int) indexSize);
+            CRC32 crc = new CRC32();
+            crc.update(index.duplicate());
+            if (trailer.getInt(0) != (int) crc.getValue()) {
+                throw new IOException("Index checksum mismatch");
+            }
+            count = index.getInt();
+            maxId = index.getLong();
+            maxTimestamp = index.getLong();
+            blocks = index.getInt();
+            if (blocks != (indexSize - FOOTER_FIXED) / FOOTER_BLOCK) {
+                throw new IOException("Index of " + blocks + " blocks does not fit " + indexSize + " bytes");
+            }
+            int capacity = Math.max(blocks, 1);
+            blockOffset = new long[capacity];
+            blockMin = new long[capacity];
+            blockMax = new long[capacity];
+            blockMinTimestamp = new long[capacity];
+            blockMaxTimestamp = new long[capacity];
+            for (int b = 0; b < blocks; b++) {
+                blockOffset[b] = index.getLong();
+                blockMin[b] = index.getLong();
+                blockMax[b] = index.getLong();
+                blockMinTimestamp[b] = index.getLong();
+                blockMaxTimestamp[b] = index.getLong();
+            }
+            length = frames;
+            sealed = true;
+            return true;
+        }
+
+        void indexed(long offset, long id, long timestamp) {
+            if (count % INDEX_INTERVAL == 0) {
+                if (blocks == blockOffset.length) {
+                    blockOffset = Arrays.copyOf(blockOffset, blocks * 2);
+                    blockMin = Arrays.copyOf(blockMin, blocks * 2);
+                    blockMax = Arrays.copyOf(blockMax, blocks * 2);
+                    blockMinTimestamp = Arrays.copyOf(blockMinTimestamp, blocks * 2);
+                    blockMaxTimestamp = Arrays.copyOf(blockMaxTimestamp, blocks * 2);
+                }
+                blockOffset[blocks] = offset;
+                blockMin[blocks] = Long.MAX_VALUE;
+                blockMax[blocks] = Long.MIN_VALUE;
+                blockMinTimestamp[blocks] = Long.MAX_VALUE;
+                blockMaxTimestamp[blocks] = Long.MIN_VALUE;
+                blocks++;
+            }
+            blockMin[blocks - 1] = Math.min(blockMin[blocks - 1], id);
+            blockMax[blocks - 1] = Math.max(blockMax[blocks - 1], id);
+            blockMinTimestamp[blocks - 1] = Math.min(blockMinTimestamp[blocks - 1], timestamp);
+            blockMaxTimestamp[blocks - 1] = Math.max(blockMaxTimestamp[blocks - 1], timestamp);
+            maxId = Math.max(maxId, id);
+            maxTimestamp = Math.max(maxTimestamp, timestamp);
+            count++;
+        }
+
+        /**
+         * @throws IOException if a frame of a sealed segment, not checked when it was opened, is damaged
+         */
+        List<BuildHistory.BuildRecord> decodeBlock(ByteBuffer buffer, int block) throws IOException {
+            List<BuildHistory.BuildRecord> records = new ArrayList<>(INDEX_INTERVAL);
+            long end = block + 1 < blocks ? blockOffset[block + 1] : length;
+            CRC32 crc = sealed ? new CRC32() : null;
+            for (long offset = blockOffset[block]; offset < end; ) {
+                int frame = buffer.getInt((int) offset);
+                if (crc != null) {
+                    if (frame < 0 || offset + FRAME_OVERHEAD + frame > end) {
+                        throw new IOException("Damaged record at offset " + offset + " of " + file);
+                    }
+                    crc.reset();
+                    crc.update(buffer.duplicate()
+                            .position((int) offset + FRAME_OVERHEAD)
+                            .limit((int) offset + FRAME_OVERHEAD + frame));
+                    if (buffer.getInt((int) offset + 4) != (int) crc.getValue()) {
+                        throw new IOException("Damaged record at offset " + offset + " of " + file);
+                    }
+                }
+                records.add(decode(buffer, (int) offset + FRAME_OVERHEAD));
+                offset += FRAME_OVERHEAD + frame;
+            }
+            return records;
+        }
+
+        /**
+         * @return a buffer over the complete frames, remapped only if the segment has grown since the last call
+         */
+        ByteBuffer map() throws IOException {
+            if (mapped == null || mapped.capacity() < length) {
+                try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                    mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+                }
+            }
+            return mapped;
+        }
+    }
+}
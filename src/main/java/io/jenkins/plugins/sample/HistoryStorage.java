@@ -0,0 +1,160 @@
+package io.jenkins.plugins.sample;
+
+import hudson.DescriptorExtensionList;
+import hudson.ExtensionPoint;
+import hudson.model.AbstractDescribableImpl;
+import hudson.model.Descriptor;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import jenkins.model.Jenkins;
+
+/**
+ * Where {@link BuildHistory} keeps the onboarding history beyond its in-memory window.
+ * <p>
+ * Records are handed over in batches, roughly in id order, once they have been recorded. {@link BuildHistory} serves
+ * the newest records and the per-category statistics from memory, so a storage only needs to answer paged queries by
+ * category, job and time range, and aggregates over all records. The storage is selected in the global configuration;
+ * {@link FileHistoryStorage} is the default.
+ */
+public abstract class HistoryStorage extends AbstractDescribableImpl<HistoryStorage> implements ExtensionPoint {
+
+    /**
+     * Stores the records. Records that are already stored, e.g. after a retried migration, may be passed again.
+     */
+    public abstract void append(List<BuildHistory.BuildRecord> records) throws IOException;
+
+    /**
+     * @return up to {@link Query#getLimit()} matching records, newest first
+     */
+    public abstract List<BuildHistory.BuildRecord> query(Query query) throws IOException;
+
+    /**
+     * @return the number of records per category UUID with a timestamp in {@code [from, to)}
+     */
+    public abstract Map<String, Long> countByCategory(long from, long to) throws IOException;
+
+    /**
+     * @param limit the number of records to return; 0 for all of them
+     * @return the newest records, oldest first
+     */
+    public abstract List<BuildHistory.BuildRecord> latest(int limit) throws IOException;
+
+    /**
+     * @return the highest stored record id, or 0 if nothing is stored
+     */
+    public abstract long maxId() throws IOException;
+
+    /**
+     * Deletes records older than the given number of days. Implementations may keep some of them a while longer.
+     */
+    public abstract void deleteOlderThan(int maxAgeDays) throws IOException;
+
+    /**
+     * Releases files or connections; called when the storage is replaced or Jenkins shuts down.
+     */
+    public void close() throws IOException {}
+
+    public static DescriptorExtensionList<HistoryStorage, HistoryStorageDescriptor> all() {
+        return Jenkins.get().getDescriptorList(HistoryStorage.class);
+    }
+
+    public abstract static class HistoryStorageDescriptor extends Descriptor<HistoryStorage> {}
+
+    /**
+     * Criteria for {@link #query(Query)}. All of them are optional except the limit.
+     */
+    public static final class Query {
+        private final long after;
+        private final long before;
+        private final int limit;
+        private final String categoryUuid;
+        private final String jobFullName;
+        private final long from;
+        private final long to;
+
+        /**
+         * @param before only records with an id lower than this; {@link Long#MAX_VALUE} for no bound
+         * @param categoryUuid only records of this category, or {@code null}
+         * @param jobFullName only records of this job, or {@code null}
+         * @param from only records with a timestamp at or after this; 0 for no bound
+         * @param to only records with a timestamp before this; 0 for no bound
+         */
+        public Query(long before, int limit, String categoryUuid, String jobFullName, long from, long to) {
+            this(0, before, limit, categoryUuid, jobFullName, from, to);
+        }
+
+        public Query(long before, int limit, String categoryUuid) {
+            this(before, limit, categoryUuid, null, 0, 0);
+        }
+
+        private Query(
+                long after, long before, int limit, String categoryUuid, String jobFullName, long from, long to) {
+            this.after = after;
+            this.before = before;
+            this.limit = limit;
+            this.categoryUuid = categoryUuid;
+            this.jobFullName = jobFullName;
+            this.from = from;
+            this.to = to > 0 ? to : Long.MAX_VALUE;
+        }
+
+        Query withLimit(int limit) {
+            return new Query(after, before, limit, categoryUuid, jobFullName, from, to);
+        }
+
+        Query withBefore(long before) {
+            return new Query(after, before, limit, categoryUuid, jobFullName, from, to);
+        }
+
+        /**
+         * @return this query restricted to ids greater than {@code after} and lower than {@code before}
+         */
+        Query withIdRange(long after, long before) {
+            return new Query(after, before, limit, categoryUuid, jobFullName, from, to);
+        }
+
+        /**
+         * @return the exclusive lower bound of the id, 0 if there is none
+         */
+        public long getAfter() {
+            return after;
+        }
+
+        public long getBefore() {
+            return before;
+        }
+
+        public int getLimit() {
+            return limit;
+        }
+
+        public String getCategoryUuid() {
+            return categoryUuid;
+        }
+
+        public String getJobFullName() {
+            return jobFullName;
+        }
+
+        public long getFrom() {
+            return from;
+        }
+
+        /**
+         * @return the exclusive upper bound of the timestamp, {@link Long#MAX_VALUE} if there is none
+         */
+        public long getTo() {
+            return to;
+        }
+
+        public boolean matches(BuildHistory.BuildRecord r) {
+            return r.getId() < before
+                    && r.getId() > after
+                    && (categoryUuid == null || categoryUuid.equals(r.getCategoryUuid()))
+                    && (jobFullName == null || jobFullName.equals(r.getJobFullName()))
+                    && r.getTimestamp() >= from
+                    && r.getTimestamp() < to;
+        }
+    }
+}
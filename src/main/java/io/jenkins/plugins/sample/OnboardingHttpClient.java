@@ -0,0 +1,90 @@
+package io.jenkins.plugins.sample;
+
+import hudson.ProxyConfiguration;
+import hudson.util.Secret;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
+
+/**
+ * Shared HTTP client for calls to the onboarding endpoint.
+ * <p>
+ * One {@link HttpClient} is kept per connect timeout, so connections (HTTP/2 where the server supports it) are pooled
+ * and kept alive across calls instead of repeating the TCP and TLS handshakes every time.
+ */
+final class OnboardingHttpClient {
+
+    private static volatile OnboardingHttpClient shared;
+
+    private final Duration connectTimeout;
+    private final HttpClient client;
+
+    private OnboardingHttpClient(Duration connectTimeout) {
+        this.connectTimeout = connectTimeout;
+        this.client = ProxyConfiguration.newHttpClientBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(connectTimeout)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+    }
+
+    static OnboardingHttpClient shared(Duration connectTimeout) {
+        OnboardingHttpClient current = shared;
+        if (current == null || !current.connectTimeout.equals(connectTimeout)) {
+            synchronized (OnboardingHttpClient.class) {
+                current = shared;
+                if (current == null || !current.connectTimeout.equals(connectTimeout)) {
+                    current = new OnboardingHttpClient(connectTimeout);
+                    shared = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * @return the status code of a GET request to {@code url}
+     */
+    int get(String url, String userName, Secret password, Duration readTimeout)
+            throws IOException, InterruptedException {
+        HttpRequest request = newRequest(url, userName, password, readTimeout).GET().build();
+        return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    /**
+     * @return the status code of a POST request sending {@code body} to {@code url}
+     */
+    int post(
+            String url,
+            String userName,
+            Secret password,
+            Duration readTimeout,
+            String contentType,
+            HttpRequest.BodyPublisher body)
+            throws IOException, InterruptedException {
+        HttpRequest request = newRequest(url, userName, password, readTimeout)
+                .header("Content-Type", contentType)
+                .POST(body)
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    /**
+     * @return the value of an {@code Authorization} header for basic authentication
+     */
+    static String basicAuthorization(String userName, Secret password) {
+        String auth = userName + ":" + Secret.toString(password);
+        return "Basic " + Base64.getEncoder().encodeToString(auth.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static HttpRequest.Builder newRequest(String url, String userName, Secret password, Duration readTimeout) {
+        return HttpRequest.newBuilder(URI.create(url))
+                .timeout(readTimeout)
+                .header("Authorization", basicAuthorization(userName, password));
+    }
+}
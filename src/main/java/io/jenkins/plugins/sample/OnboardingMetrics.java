@@ -0,0 +1,203 @@
+package io.jenkins.plugins.sample;
+
+import hudson.Extension;
+import hudson.model.RootAction;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import jenkins.model.Jenkins;
+import org.kohsuke.stapler.StaplerResponse2;
+import org.kohsuke.stapler.verb.GET;
+
+/**
+ * Counters and latency histograms of the plugin, served in the Prometheus text format at
+ * {@code JENKINS_URL/onboarding-metrics/}.
+ * <p>
+ * Recording only adds to {@link LongAdder}s, picking the bucket by a scan of fixed bounds, so it neither locks nor
+ * allocates and is cheap enough for build threads. Only the first build of a category allocates its counter.
+ */
+public final class OnboardingMetrics {
+
+    static final Histogram TASK_PERFORM =
+            new Histogram("onboarding_task_perform_seconds", "Time spent in the onboarding build step.");
+
+    static final Histogram HELLO_PERFORM =
+            new Histogram("onboarding_hello_perform_seconds", "Time spent in the hello world build step.");
+
+    static final Histogram HISTORY_LOAD =
+            new Histogram("onboarding_history_load_seconds", "Time to load the build history.");
+
+    static final Histogram HISTORY_APPEND =
+            new Histogram("onboarding_history_append_seconds", "Time to record a build in the build history.");
+
+    static final Histogram HISTORY_FLUSH =
+            new Histogram("onboarding_history_flush_seconds", "Time to write pending build history to disk.");
+
+    static final Histogram CONFIG_SAVE =
+            new Histogram("onboarding_config_save_seconds", "Time to save the global configuration.");
+
+    static final Histogram TEST_CONNECTION =
+            new Histogram("onboarding_test_connection_seconds", "Duration of connection tests to the endpoint.");
+
+    static final Histogram TEST_PAYLOAD =
+            new Histogram("onboarding_test_payload_seconds", "Duration of test payloads sent to the endpoint.");
+
+    private static final List<Histogram> HISTOGRAMS = List.of(
+            TASK_PERFORM,
+            HELLO_PERFORM,
+            HISTORY_LOAD,
+            HISTORY_APPEND,
+            HISTORY_FLUSH,
+            CONFIG_SAVE,
+            TEST_CONNECTION,
+            TEST_PAYLOAD);
+
+    private static final ConcurrentMap<String, LongAdder> CATEGORY_BUILDS = new ConcurrentHashMap<>();
+
+    private OnboardingMetrics() {}
+
+    /**
+     * Counts a build recorded for the category; Prometheus derives the build rate from it.
+     */
+    static void categoryBuild(String categoryUuid) {
+        if (categoryUuid != null) {
+            CATEGORY_BUILDS.computeIfAbsent(categoryUuid, k -> new LongAdder()).increment();
+        }
+    }
+
+    static String scrape() {
+        StringBuilder out = new StringBuilder(4096);
+        for (Histogram h : HISTOGRAMS) {
+            h.writeTo(out);
+        }
+        out.append("# HELP onboarding_category_builds_total Builds recorded per onboarding category.\n");
+        out.append("# TYPE onboarding_category_builds_total counter\n");
+        OnboardingPluginConfig config = OnboardingPluginConfig.get();
+        for (Map.Entry<String, LongAdder> e : CATEGORY_BUILDS.entrySet()) {
+            String name = config != null ? config.getCategoryName(e.getKey()) : "";
+            out.append("onboarding_category_builds_total{category_uuid=\"")
+                    .append(escape(e.getKey()))
+                    .append("\",category=\"")
+                    .append(escape(name))
+                    .append("\"} ")
+                    .append(e.getValue().sum())
+                    .append('\n');
+        }
+        out.append("# HELP onboarding_history_records Build records held in memory.\n");
+        out.append("# TYPE onboarding_history_records gauge\n");
+        out.append("onboarding_history_records ").append(BuildHistory.get().size()).append('\n');
+        return out.toString();
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    /**
+     * Latency histogram with fixed buckets, plus a counter of failed calls.
+     */
+    static final class Histogram {
+
+        /** Upper bounds of the buckets in seconds, as exported. */
+        private static final double[] BOUNDS = {0.001, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30};
+
+        private static final long[] BOUNDS_NANOS = new long[BOUNDS.length];
+
+        static {
+            for (int i = 0; i < BOUNDS.length; i++) {
+                BOUNDS_NANOS[i] = (long) (BOUNDS[i] * 1e9);
+            }
+        }
+
+        private final String name;
+        private final String help;
+
+        /** Non-cumulative counts; the last bucket has no upper bound. */
+        private final LongAdder[] buckets = new LongAdder[BOUNDS.length + 1];
+
+        private final LongAdder sumNanos = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+
+        Histogram(String name, String help) {
+            this.name = name;
+            this.help = help;
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        /**
+         * Records a call that started at {@code startNanos}, as returned by {@link System#nanoTime()}.
+         */
+        void observe(long startNanos, boolean succeeded) {
+            long nanos = System.nanoTime() - startNanos;
+            int i = 0;
+            while (i < BOUNDS_NANOS.length && nanos > BOUNDS_NANOS[i]) {
+                i++;
+            }
+            buckets[i].increment();
+            sumNanos.add(nanos);
+            if (!succeeded) {
+                failures.increment();
+            }
+        }
+
+        long count() {
+            long count = 0;
+            for (LongAdder bucket : buckets) {
+                count += bucket.sum();
+            }
+            return count;
+        }
+
+        void writeTo(StringBuilder out) {
+            out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+            out.append("# TYPE ").append(name).append(" histogram\n");
+            long cumulative = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                cumulative += buckets[i].sum();
+                out.append(name)
+                        .append("_bucket{le=\"")
+                        .append(i < BOUNDS.length ? String.valueOf(BOUNDS[i]) : "+Inf")
+                        .append("\"} ")
+                        .append(cumulative)
+                        .append('\n');
+            }
+            out.append(name).append("_sum ").append(sumNanos.sum() / 1e9).append('\n');
+            out.append(name).append("_count ").append(cumulative).append('\n');
+            String failed = name.replaceFirst("_seconds$", "") + "_failures_total";
+            out.append("# HELP ").append(failed).append(" Failed calls counted in ").append(name).append(".\n");
+            out.append("# TYPE ").append(failed).append(" counter\n");
+            out.append(failed).append(' ').append(failures.sum()).append('\n');
+        }
+    }
+
+    @Extension
+    public static final class Endpoint implements RootAction {
+
+        @Override
+        public String getIconFileName() {
+            return null;
+        }
+
+        @Override
+        public String getDisplayName() {
+            return "Onboarding Metrics";
+        }
+
+        @Override
+        public String getUrlName() {
+            return "onboarding-metrics";
+        }
+
+        @GET
+        public void doIndex(StaplerResponse2 rsp) throws IOException {
+            Jenkins.get().checkPermission(Jenkins.SYSTEM_READ);
+            rsp.setContentType("text/plain; version=0.0.4; charset=utf-8");
+            rsp.getWriter().write(scrape());
+        }
+    }
+}
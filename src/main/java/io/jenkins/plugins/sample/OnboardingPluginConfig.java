@@ -1,32 +1,98 @@
 package io.jenkins.plugins.sample;
 
+import hudson.BulkChange;
+import hudson.DescriptorExtensionList;
 import hudson.Extension;
+import hudson.ExtensionList;
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import hudson.init.Terminator;
 import hudson.model.AbstractDescribableImpl;
 import hudson.model.Descriptor;
 import hudson.util.FormValidation;
 import hudson.util.Secret;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
 import java.net.HttpURLConnection;
-import java.net.URL;
+import java.net.http.HttpRequest;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.ArrayList;
-import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import jenkins.model.GlobalConfiguration;
+import jenkins.model.Jenkins;
+import jenkins.util.SystemProperties;
+import jenkins.util.Timer;
 import net.sf.json.JSONArray;
 import net.sf.json.JSONObject;
 import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.DataBoundSetter;
+import org.kohsuke.stapler.HttpResponse;
+import org.kohsuke.stapler.HttpResponses;
 import org.kohsuke.stapler.QueryParameter;
 import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerRequest2;
+import org.kohsuke.stapler.StaplerResponse2;
+import org.kohsuke.stapler.verb.GET;
+import org.kohsuke.stapler.verb.POST;
 
 @Extension
 public class OnboardingPluginConfig extends GlobalConfiguration {
 
+    private static final Logger LOGGER = Logger.getLogger(OnboardingPluginConfig.class.getName());
+
+    private static final int DEFAULT_HISTORY_PAGE_SIZE = 50;
+
+    private static final int MAX_HISTORY_PAGE_SIZE = 500;
+
+    // Created this mock url using https://beeceptor.com/
+    static final String DEFAULT_ENDPOINT_URL = "https://onboarding.free.beeceptor.com";
+
+    private static final long SAVE_DELAY_MS =
+            SystemProperties.getLong(OnboardingPluginConfig.class.getName() + ".saveDelayMillis", 500L);
+
     private String name;
 
     private String description;
 
-    private List<Category> categories = new ArrayList<>();
+    private volatile List<Category> categories = new ArrayList<>();
+
+    /**
+     * Immutable UUID to category index, replaced as a whole whenever {@link #categories} changes.
+     */
+    private transient volatile Map<String, Category> categoryIndex = Collections.emptyMap();
+
+    /** Whether any category has a {@link Category#getMaxConcurrentBuilds() limit}. */
+    private transient volatile boolean concurrencyLimited;
+
+    /**
+     * Built on first use, or by {@link #warmUp()}, for the {@link #categoriesVersion} it was built from.
+     */
+    private transient volatile CategorySearchIndex categorySearchIndex;
+
+    /**
+     * Bumped after each replacement of {@link #categories}, so data derived from them can be cached.
+     */
+    private final transient AtomicLong categoriesVersion = new AtomicLong();
+
+    /**
+     * Setters request a save through this rather than calling {@link #save()}, so consecutive setter calls
+     * (e.g. from Configuration as Code) end up as a single write.
+     */
+    private final transient WriteBehind deferredSave =
+            new WriteBehind(getClass().getName(), SAVE_DELAY_MS, this::save);
 
     private boolean connectionConfig;
 
@@ -36,17 +102,37 @@ public class OnboardingPluginConfig extends GlobalConfiguration {
 
     private Secret payload;
 
+    private String endpointUrl = DEFAULT_ENDPOINT_URL;
+
+    private int connectTimeoutSeconds = 10;
+
+    private int readTimeoutSeconds = 30;
+
+    private int historyHotRecords = BuildHistory.Retention.DEFAULT.getHotRecords();
+
+    private int historyMaxPerCategory = BuildHistory.Retention.DEFAULT.getMaxPerCategory();
+
+    private int historyMaxAgeDays = BuildHistory.Retention.DEFAULT.getMaxAgeDays();
+
+    private HistoryStorage historyStorage;
+
     public Secret getPayload() {
         return payload;
     }
 
     public OnboardingPluginConfig() {
         load();
+        rebuildCategoryIndex();
+    }
+
+    static OnboardingPluginConfig get() {
+        return GlobalConfiguration.all().get(OnboardingPluginConfig.class);
     }
 
     @DataBoundSetter
     public void setPayload(Secret payload) {
         this.payload = payload;
+        requestSave();
     }
 
     public List<Category> getCategories() {
@@ -56,7 +142,113 @@ public class OnboardingPluginConfig extends GlobalConfiguration {
     @DataBoundSetter
     public void setCategories(List<Category> categories) {
         this.categories = categories;
-        save();
+        rebuildCategoryIndex();
+        requestSave();
+    }
+
+    /**
+     * @return the category with the given UUID, or {@code null} if there is none
+     */
+    public Category getCategory(String uuid) {
+        return uuid == null ? null : categoryIndex.get(uuid);
+    }
+
+    /**
+     * @return whether any category limits its concurrent builds, so {@link CategoryThrottle} has work to do
+     */
+    boolean isConcurrencyLimited() {
+        return concurrencyLimited;
+    }
+
+    /**
+     * @return a number that changes whenever the categories are replaced; read it before the categories to cache
+     *     something derived from them
+     */
+    public long getCategoriesVersion() {
+        return categoriesVersion.get();
+    }
+
+    CategorySearchIndex getCategorySearchIndex() {
+        long version = categoriesVersion.get();
+        CategorySearchIndex index = categorySearchIndex;
+        if (index == null || index.getVersion() != version) {
+            List<Category> current = categories;
+            index = new CategorySearchIndex(current != null ? current : List.of(), version);
+            categorySearchIndex = index;
+        }
+        return index;
+    }
+
+    /**
+     * Builds the category search index in the background during startup rather than on the first job config page.
+     */
+    @Initializer(after = InitMilestone.EXTENSIONS_AUGMENTED)
+    public static void warmUp() {
+        Timer.get().submit(() -> {
+            OnboardingPluginConfig config = get();
+            if (config != null) {
+                config.getCategorySearchIndex();
+            }
+        });
+    }
+
+    public String getCategoryName(String uuid) {
+        Category category = getCategory(uuid);
+        return category != null ? category.getCategoryName() : "Unknown Category";
+    }
+
+    /**
+     * Applies several changes and writes the configuration once at the end.
+     * If {@code changes} throws, nothing is written.
+     */
+    public void update(Consumer<OnboardingPluginConfig> changes) throws IOException {
+        try (BulkChange bc = new BulkChange(this)) {
+            changes.accept(this);
+            bc.commit();
+        }
+    }
+
+    @Override
+    public synchronized void save() {
+        long start = System.nanoTime();
+        boolean saved = false;
+        try {
+            super.save();
+            saved = true;
+        } finally {
+            OnboardingMetrics.CONFIG_SAVE.observe(start, saved);
+        }
+    }
+
+    private void requestSave() {
+        if (BulkChange.contains(this)) {
+            return;
+        }
+        deferredSave.request();
+    }
+
+    @Terminator
+    public static void flushPendingSave() throws IOException {
+        OnboardingPluginConfig config =
+                ExtensionList.lookup(OnboardingPluginConfig.class).get(OnboardingPluginConfig.class);
+        if (config != null && config.deferredSave.isPending()) {
+            config.deferredSave.flush();
+        }
+    }
+
+    private void rebuildCategoryIndex() {
+        List<Category> current = categories;
+        Map<String, Category> index = new HashMap<>();
+        boolean limited = false;
+        if (current != null) {
+            for (Category c : current) {
+                index.putIfAbsent(c.getUuid(), c);
+                limited |= c.getMaxConcurrentBuilds() > 0;
+            }
+        }
+        categoryIndex = Collections.unmodifiableMap(index);
+        concurrencyLimited = limited;
+        categoriesVersion.incrementAndGet();
     }
 
     public String getName() {
@@ -67,7 +259,7 @@ public class OnboardingPluginConfig extends GlobalConfiguration {
     public void setName(String name) {
         if (name.matches("^[a-zA-Z ]+$")) {
             this.name = name;
-            save();
+            requestSave();
         }
     }
 
@@ -77,8 +269,12 @@ public class OnboardingPluginConfig extends GlobalConfiguration {
 
     @DataBoundSetter
     public void setConnectionConfig(boolean connectionConfig) {
+        boolean enabled = connectionConfig && !this.connectionConfig;
         this.connectionConfig = connectionConfig;
-        save();
+        requestSave();
+        if (enabled) {
+            PayloadDelivery.connectionEnabled();
+        }
     }
 
     public String getUserName() {
@@ -88,7 +284,7 @@ public class OnboardingPluginConfig extends GlobalConfiguration {
     @DataBoundSetter
     public void setUserName(String userName) {
         this.userName = userName;
-        save();
+        requestSave();
     }
 
     public Secret getPassword() {
@@ -98,7 +294,7 @@ public class OnboardingPluginConfig extends GlobalConfiguration {
     @DataBoundSetter
     public void setPassword(Secret password) {
         this.password = password;
-        save();
+        requestSave();
     }
 
     public String getDescription() {
@@ -108,7 +304,7 @@ public class OnboardingPluginConfig extends GlobalConfiguration {
     @DataBoundSetter
     public void setDescription(String description) {
         this.description = description;
-        save();
+        requestSave();
     }
 
     @Override
@@ -120,6 +316,7 @@ public class OnboardingPluginConfig extends GlobalConfiguration {
         this.name = submittedName;
         this.description = json.getString("description");
 
+        boolean wasConnected = connectionConfig;
         if (json.containsKey("connectionConfig")) {
             JSONObject block = json.getJSONObject("connectionConfig");
             this.connectionConfig = true;
@@ -127,6 +324,9 @@ public class OnboardingPluginConfig extends GlobalConfiguration {
             // Converting plain text string to Secret object
             this.password = Secret.fromString(block.getString("password"));
             this.payload = Secret.fromString(block.getString("payload"));
+            this.endpointUrl = block.optString("endpointUrl", DEFAULT_ENDPOINT_URL);
+            this.connectTimeoutSeconds = Math.max(1, block.optInt("connectTimeoutSeconds", connectTimeoutSeconds));
+            this.readTimeoutSeconds = Math.max(1, block.optInt("readTimeoutSeconds", readTimeoutSeconds));
         } else {
             this.connectionConfig = false;
             this.userName = null;
@@ -140,20 +340,140 @@ public class OnboardingPluginConfig extends GlobalConfiguration {
 
             if (categoriesObj instanceof JSONArray array) {
                 for (int i = 0; i < array.size(); i++) {
-                    JSONObject item = array.getJSONObject(i);
-                    updatedCategories.add(new Category(item.getString("categoryName"), item.optString("uuid")));
+                    updatedCategories.add(Category.fromJson(array.getJSONObject(i)));
                 }
             } else if (categoriesObj instanceof JSONObject item) {
-                updatedCategories.add(new Category(item.getString("categoryName"), item.optString("uuid")));
+                updatedCategories.add(Category.fromJson(item));
             }
             this.categories = updatedCategories;
+            rebuildCategoryIndex();
+        }
+
+        this.historyHotRecords = Math.max(0, json.optInt("historyHotRecords", historyHotRecords));
+        this.historyMaxPerCategory = Math.max(0, json.optInt("historyMaxPerCategory", historyMaxPerCategory));
+        this.historyMaxAgeDays = Math.max(0, json.optInt("historyMaxAgeDays", historyMaxAgeDays));
+        if (json.has("historyStorage")) {
+            this.historyStorage = req.bindJSON(HistoryStorage.class, json.getJSONObject("historyStorage"));
         }
         save();
+        applyHistoryStorage();
+        if (connectionConfig && !wasConnected) {
+            PayloadDelivery.connectionEnabled();
+        }
         return true;
     }
 
+    public String getEndpointUrl() {
+        return endpointUrl;
+    }
+
+    @DataBoundSetter
+    public void setEndpointUrl(String endpointUrl) {
+        this.endpointUrl = endpointUrl;
+        requestSave();
+    }
+
+    public int getConnectTimeoutSeconds() {
+        return connectTimeoutSeconds;
+    }
+
+    @DataBoundSetter
+    public void setConnectTimeoutSeconds(int connectTimeoutSeconds) {
+        this.connectTimeoutSeconds = Math.max(1, connectTimeoutSeconds);
+        requestSave();
+    }
+
+    public int getReadTimeoutSeconds() {
+        return readTimeoutSeconds;
+    }
+
+    @DataBoundSetter
+    public void setReadTimeoutSeconds(int readTimeoutSeconds) {
+        this.readTimeoutSeconds = Math.max(1, readTimeoutSeconds);
+        requestSave();
+    }
+
+    /**
+     * @return the URL submitted with a validation request if any, else the configured one
+     */
+    String endpointUrl(String submitted) {
+        if (submitted != null && !submitted.isEmpty()) {
+            return submitted;
+        }
+        return endpointUrl != null && !endpointUrl.isEmpty() ? endpointUrl : DEFAULT_ENDPOINT_URL;
+    }
+
+    Duration connectTimeout() {
+        return Duration.ofSeconds(Math.max(1, connectTimeoutSeconds));
+    }
+
+    Duration readTimeout() {
+        return Duration.ofSeconds(Math.max(1, readTimeoutSeconds));
+    }
+
+    public int getHistoryHotRecords() {
+        return historyHotRecords;
+    }
+
+    @DataBoundSetter
+    public void setHistoryHotRecords(int historyHotRecords) {
+        this.historyHotRecords = Math.max(0, historyHotRecords);
+        requestSave();
+    }
+
+    public int getHistoryMaxPerCategory() {
+        return historyMaxPerCategory;
+    }
+
+    @DataBoundSetter
+    public void setHistoryMaxPerCategory(int historyMaxPerCategory) {
+        this.historyMaxPerCategory = Math.max(0, historyMaxPerCategory);
+        requestSave();
+    }
+
+    public int getHistoryMaxAgeDays() {
+        return historyMaxAgeDays;
+    }
+
+    @DataBoundSetter
+    public void setHistoryMaxAgeDays(int historyMaxAgeDays) {
+        this.historyMaxAgeDays = Math.max(0, historyMaxAgeDays);
+        requestSave();
+    }
+
+    /**
+     * @return the selected history storage, {@link FileHistoryStorage} unless another one was chosen
+     */
+    public HistoryStorage getHistoryStorage() {
+        return historyStorage != null ? historyStorage : new FileHistoryStorage();
+    }
+
+    @DataBoundSetter
+    public void setHistoryStorage(HistoryStorage historyStorage) {
+        this.historyStorage = historyStorage;
+        requestSave();
+        applyHistoryStorage();
+    }
+
+    private void applyHistoryStorage() {
+        try {
+            BuildHistory.get().setStorage(getHistoryStorage());
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to switch the onboarding history storage", e);
+        }
+    }
+
+    public static DescriptorExtensionList<HistoryStorage, HistoryStorage.HistoryStorageDescriptor>
+            getHistoryStorageDescriptors() {
+        return HistoryStorage.all();
+    }
+
+    public BuildHistory.Retention getHistoryRetention() {
+        return new BuildHistory.Retention(historyHotRecords, historyMaxPerCategory, historyMaxAgeDays);
+    }
+
     public List<BuildHistory.BuildRecord> getRecentBuilds() {
-        return BuildHistory.load().getRecords();
+        return BuildHistory.get().getRecords();
     }
 
     @Extension
@@ -164,7 +484,128 @@ public class OnboardingPluginConfig extends GlobalConfiguration {
         }
 
         public List<BuildHistory.BuildRecord> getRecentBuilds() {
-            return BuildHistory.load().getRecords();
+            return BuildHistory.get().getRecords();
+        }
+
+        /**
+         * Serves one page of the global history as JSON, newest first. Used by the config page to load history
+         * lazily, at the same descriptor URL as its form validation.
+         *
+         * @param before cursor returned as {@code next} by the previous page; empty for the first page
+         * @param limit page size, defaults to {@value OnboardingPluginConfig#DEFAULT_HISTORY_PAGE_SIZE}
+         * @param category optional category UUID to filter by
+         * @param job optional full name of a job to filter by
+         * @param from optional lower bound of the record timestamp, in milliseconds since the epoch
+         * @param to optional exclusive upper bound of the record timestamp
+         * @param q optional words the job name must contain, matched as word prefixes through the history index
+         */
+        @GET
+        public HttpResponse doHistory(
+                @QueryParameter String before,
+                @QueryParameter int limit,
+                @QueryParameter String category,
+                @QueryParameter String job,
+                @QueryParameter long from,
+                @QueryParameter long to,
+                @QueryParameter String q) {
+            Jenkins.get().checkPermission(Jenkins.ADMINISTER);
+            long cursor = Long.MAX_VALUE;
+            if (before != null && !before.isEmpty()) {
+                try {
+                    cursor = Long.parseLong(before);
+                } catch (NumberFormatException e) {
+                    return HttpResponses.errorJSON("Invalid cursor: " + before);
+                }
+            }
+            int size = limit <= 0 ? DEFAULT_HISTORY_PAGE_SIZE : Math.min(limit, MAX_HISTORY_PAGE_SIZE);
+            String categoryUuid = category == null || category.isEmpty() ? null : category;
+
+            String jobFullName = job == null || job.isEmpty() ? null : job;
+
+            BuildHistory history = BuildHistory.get();
+            HistoryStorage.Query query = new HistoryStorage.Query(cursor, size, categoryUuid, jobFullName, from, to);
+            boolean search = q != null && !q.isBlank();
+            BuildHistory.Page page = search ? history.search(q, query) : history.getPage(query);
+            JSONArray records = new JSONArray();
+            for (BuildHistory.BuildRecord r : page.getRecords()) {
+                JSONObject o = new JSONObject();
+                o.put("id", r.getId());
+                o.put("jobName", r.getJobName());
+                o.put("buildNumber", r.getBuildNumber());
+                o.put("categoryUuid", r.getCategoryUuid());
+                o.put("categoryName", r.getCategoryName());
+                o.put("timestamp", r.getTimestamp());
+                o.put("result", r.getResult());
+                o.put("duration", r.getDuration());
+                records.add(o);
+            }
+            JSONObject data = new JSONObject();
+            data.put("records", records);
+            data.put("next", page.getNext() != null ? String.valueOf(page.getNext()) : null);
+            // older records are missing until the history has been loaded, and for searches indexed, after startup
+            data.put("partial", !history.isLoaded() || (search && !history.isIndexed()));
+            return HttpResponses.okJSON(data);
+        }
+
+        /**
+         * Adds, renames and removes categories in bulk from the request body, NDJSON or CSV as described in
+         * {@link CategoryImport}, and saves once.
+         *
+         * @param format {@code ndjson} or {@code csv}; taken from the content type if empty
+         * @param replace whether categories missing from the body are removed
+         */
+        @POST
+        public HttpResponse doImportCategories(
+                StaplerRequest2 req, @QueryParameter String format, @QueryParameter boolean replace)
+                throws IOException {
+            Jenkins.get().checkPermission(Jenkins.ADMINISTER);
+            try (Reader in = new InputStreamReader(req.getInputStream(), StandardCharsets.UTF_8)) {
+                CategoryImport.Format f = CategoryImport.Format.of(format, req.getContentType());
+                return HttpResponses.okJSON(CategoryImport.apply(OnboardingPluginConfig.get(), in, f, replace));
+            } catch (IllegalArgumentException e) {
+                return HttpResponses.errorJSON(e.getMessage());
+            }
+        }
+
+        /**
+         * Streams the matching history records, newest first, as NDJSON or CSV. Takes the filters of
+         * {@link #doHistory}.
+         */
+        @GET
+        public void doExportHistory(
+                StaplerResponse2 rsp,
+                @QueryParameter String format,
+                @QueryParameter String category,
+                @QueryParameter String job,
+                @QueryParameter long from,
+                @QueryParameter long to)
+                throws IOException {
+            Jenkins.get().checkPermission(Jenkins.ADMINISTER);
+            CategoryImport.Format f;
+            try {
+                f = CategoryImport.Format.of(format, null);
+            } catch (IllegalArgumentException e) {
+                rsp.sendError(HttpURLConnection.HTTP_BAD_REQUEST, "Unsupported format: " + format);
+                return;
+            }
+            boolean csv = f == CategoryImport.Format.CSV;
+            rsp.setContentType(csv ? "text/csv; charset=UTF-8" : "application/x-ndjson; charset=UTF-8");
+            rsp.setHeader("Content-Disposition", "attachment; filename=onboarding-history." + (csv ? "csv" : "ndjson"));
+            Writer out = new BufferedWriter(new OutputStreamWriter(rsp.getOutputStream(), StandardCharsets.UTF_8));
+            HistoryStorage.Query query = new HistoryStorage.Query(
+                    Long.MAX_VALUE,
+                    HistoryExport.PAGE_SIZE,
+                    category == null || category.isEmpty() ? null : category,
+                    job == null || job.isEmpty() ? null : job,
+                    from,
+                    to);
+            HistoryExport.write(BuildHistory.get(), query, f, out);
+            out.flush();
+        }
+
+        public DescriptorExtensionList<HistoryStorage, HistoryStorage.HistoryStorageDescriptor>
+                getHistoryStorageDescriptors() {
+            return HistoryStorage.all();
         }
 
         public FormValidation doCheckName(@QueryParameter String value) {
@@ -178,62 +619,66 @@ public class OnboardingPluginConfig extends GlobalConfiguration {
             return FormValidation.ok();
         }
 
+        @POST
         public FormValidation doTestConnection(
-                @QueryParameter("userName") String userName, @QueryParameter("password") Secret password) {
+                @QueryParameter("userName") String userName,
+                @QueryParameter("password") Secret password,
+                @QueryParameter("endpointUrl") String endpointUrl) {
+            Jenkins.get().checkPermission(Jenkins.ADMINISTER);
+            OnboardingPluginConfig config = OnboardingPluginConfig.get();
+            long start = System.nanoTime();
+            boolean succeeded = false;
             try {
-                // Created this mock url using https://beeceptor.com/
-                URL url = new URL("https://onboarding.free.beeceptor.com");
-                HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-                conn.setRequestMethod("GET");
-
-                String auth = userName + ":" + password.getPlainText();
-                String encodedAuth = Base64.getEncoder().encodeToString(auth.getBytes("UTF-8"));
-                conn.setRequestProperty("Authorization", "Basic " + encodedAuth);
-
-                int responseCode = conn.getResponseCode();
-                if (responseCode == HttpURLConnection.HTTP_OK) {
+                int responseCode = OnboardingHttpClient.shared(config.connectTimeout())
+                        .get(config.endpointUrl(endpointUrl), userName, password, config.readTimeout());
+                succeeded = responseCode == HttpURLConnection.HTTP_OK;
+                if (succeeded) {
                     return FormValidation.ok("Connection established successfully");
                 } else {
                     return FormValidation.warning("Failed! Server returned status code: " + responseCode);
                 }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return FormValidation.error("Client error: interrupted");
             } catch (Exception e) {
                 return FormValidation.error("Client error: " + e.getMessage());
+            } finally {
+                OnboardingMetrics.TEST_CONNECTION.observe(start, succeeded);
             }
         }
 
+        @POST
         public FormValidation doTestPayload(
                 @QueryParameter("userName") String userName,
                 @QueryParameter("password") Secret password,
-                @QueryParameter("payload") Secret payload) {
+                @QueryParameter("payload") Secret payload,
+                @QueryParameter("endpointUrl") String endpointUrl) {
+            Jenkins.get().checkPermission(Jenkins.ADMINISTER);
+            OnboardingPluginConfig config = OnboardingPluginConfig.get();
+            long start = System.nanoTime();
+            boolean succeeded = false;
             try {
-                // Created this mock url using https://beeceptor.com/
-                URL url = new URL("https://onboarding.free.beeceptor.com");
-                HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-                conn.setRequestMethod("POST");
-                conn.setDoOutput(true); // Required for sending a body
-
-                // 1. Basic Auth Header
-                String auth = userName + ":" + password.getPlainText();
-                String encodedAuth = Base64.getEncoder().encodeToString(auth.getBytes("UTF-8"));
-                conn.setRequestProperty("Authorization", "Basic " + encodedAuth);
-
-                // 2. Set Content Type
-                conn.setRequestProperty("Content-Type", "text/plain");
-
-                // 3. Send the Payload Body
-                try (java.io.OutputStream os = conn.getOutputStream()) {
-                    byte[] input = payload.getPlainText().getBytes("utf-8");
-                    os.write(input, 0, input.length);
-                }
-
-                int code = conn.getResponseCode();
-                if (code == HttpURLConnection.HTTP_OK || code == HttpURLConnection.HTTP_CREATED) {
+                int code = OnboardingHttpClient.shared(config.connectTimeout())
+                        .post(
+                                config.endpointUrl(endpointUrl),
+                                userName,
+                                password,
+                                config.readTimeout(),
+                                "text/plain",
+                                HttpRequest.BodyPublishers.ofString(Secret.toString(payload), StandardCharsets.UTF_8));
+                succeeded = code == HttpURLConnection.HTTP_OK || code == HttpURLConnection.HTTP_CREATED;
+                if (succeeded) {
                     return FormValidation.ok("Payload sent successfully!");
                 } else {
                     return FormValidation.warning("Server rejected payload. Status: " + code);
                 }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return FormValidation.error("Error: interrupted");
             } catch (Exception e) {
                 return FormValidation.error("Error: " + e.getMessage());
+            } finally {
+                OnboardingMetrics.TEST_PAYLOAD.observe(start, succeeded);
             }
         }
     }
@@ -241,6 +686,7 @@ public class OnboardingPluginConfig extends GlobalConfiguration {
     public static class Category extends AbstractDescribableImpl<Category> {
         private String categoryName;
         private final String uuid;
+        private int maxConcurrentBuilds;
 
         @DataBoundConstructor
         public Category(String categoryName, String uuid) {
@@ -248,6 +694,21 @@ public class OnboardingPluginConfig extends GlobalConfiguration {
             this.uuid = (uuid == null || uuid.isEmpty()) ? UUID.randomUUID().toString() : uuid;
         }
 
+        static Category fromJson(JSONObject json) {
+            Category category = new Category(json.getString("categoryName"), json.optString("uuid"));
+            category.setMaxConcurrentBuilds(json.optInt("maxConcurrentBuilds"));
+            return category;
+        }
+
+        /**
+         * @return a copy with another name and the same UUID and settings
+         */
+        Category withName(String name) {
+            Category renamed = new Category(name, uuid);
+            renamed.setMaxConcurrentBuilds(maxConcurrentBuilds);
+            return renamed;
+        }
+
         public String getCategoryName() {
             return categoryName;
         }
@@ -256,6 +717,18 @@ public class OnboardingPluginConfig extends GlobalConfiguration {
             return uuid;
         }
 
+        /**
+         * @return how many builds of this category may run at once, enforced by {@link CategoryThrottle}; 0 for any
+         */
+        public int getMaxConcurrentBuilds() {
+            return maxConcurrentBuilds;
+        }
+
+        @DataBoundSetter
+        public void setMaxConcurrentBuilds(int maxConcurrentBuilds) {
+            this.maxConcurrentBuilds = Math.max(0, maxConcurrentBuilds);
+        }
+
         @Extension
         public static class DescriptorImpl extends Descriptor<Category> {
             @Override
@@ -265,7 +738,7 @@ public class OnboardingPluginConfig extends GlobalConfiguration {
 
             public String getLastJob(String uuid) {
                 if (uuid == null) return "N/A";
-                return BuildHistory.load().getLatestJobForCategory(uuid);
+                return BuildHistory.get().getLatestJobForCategory(uuid);
             }
 
         }
@@ -0,0 +1,230 @@
+package io.jenkins.plugins.sample;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Build counts per category in minute, hour and day buckets, maintained by {@link BuildHistory} as builds are
+ * recorded so trends never scan the history.
+ * <p>
+ * Each category has one ring per {@link Resolution}, as long as the trends page shows: an array of counts and an
+ * array of the bucket each slot holds, as an int number of buckets since the epoch. A slot is reused, and its count
+ * reset, when time moves past the length of the ring, so recording a build only increments three ints and a category
+ * takes about a kilobyte. The rings are written to a small binary file holding the non-empty slots only, and only
+ * when a build was counted since the last write.
+ */
+final class OnboardingRollups {
+
+    private static final int MAGIC = 0x4F42524F; // "OBRO"
+
+    static final int VERSION = 2;
+
+    enum Resolution {
+        MINUTE(TimeUnit.MINUTES.toMillis(1), 60),
+        HOUR(TimeUnit.HOURS.toMillis(1), 48),
+        DAY(TimeUnit.DAYS.toMillis(1), 30);
+
+        final long millis;
+
+        /** How many buckets are kept. */
+        final int length;
+
+        Resolution(long millis, int length) {
+            this.millis = millis;
+            this.length = length;
+        }
+
+        /**
+         * @return the resolution of that name, ignoring case, or {@link #HOUR} if there is none
+         */
+        static Resolution of(String name) {
+            for (Resolution r : values()) {
+                if (r.name().equalsIgnoreCase(name)) {
+                    return r;
+                }
+            }
+            return HOUR;
+        }
+    }
+
+    private static final Resolution[] RESOLUTIONS = Resolution.values();
+
+    private final File file;
+
+    private final ConcurrentMap<String, Rings> categories = new ConcurrentHashMap<>();
+
+    /** Whether a build was counted since the file was last read or written. */
+    private final AtomicBoolean dirty = new AtomicBoolean();
+
+    OnboardingRollups(File file) {
+        this.file = file;
+    }
+
+    void record(String categoryUuid, long timestamp) {
+        if (categoryUuid != null) {
+            categories.computeIfAbsent(categoryUuid, k -> new Rings()).add(timestamp);
+            dirty.set(true);
+        }
+    }
+
+    boolean isEmpty() {
+        return categories.isEmpty();
+    }
+
+    /**
+     * @return the counts of the {@code buckets} buckets up to and including the one of {@code now}, oldest first, by
+     *     category UUID; buckets older than the resolution keeps count as zero
+     */
+    Map<String, int[]> trends(Resolution resolution, long now, int buckets) {
+        Map<String, int[]> trends = new TreeMap<>();
+        categories.forEach((uuid, rings) -> trends.put(uuid, rings.series(resolution, now, buckets)));
+        return trends;
+    }
+
+    /**
+     * Reads the file if there is one. Nothing is added if it cannot be read.
+     *
+     * @return whether the file existed and was written by this version
+     */
+    boolean load() throws IOException {
+        if (!file.exists()) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Unsupported rollup file " + file);
+            }
+            if (in.readInt() != VERSION) {
+                // rebuilt from the history in the current format
+                return false;
+            }
+            int count = in.readInt();
+            Map<String, Rings> read = new HashMap<>();
+            for (int i = 0; i < count; i++) {
+                Rings rings = read.computeIfAbsent(in.readUTF(), k -> new Rings());
+                for (Resolution r : RESOLUTIONS) {
+                    int slots = in.readInt();
+                    for (int j = 0; j < slots; j++) {
+                        rings.merge(r, in.readInt(), in.readInt());
+                    }
+                }
+            }
+            categories.putAll(read);
+        }
+        return true;
+    }
+
+    /**
+     * Replaces the file through a temporary file, so a crash leaves either the old or the new rollups. Does nothing if
+     * no build was counted since the last call.
+     */
+    void save() throws IOException {
+        if (!dirty.getAndSet(false)) {
+            return;
+        }
+        try {
+            write();
+        } catch (IOException | RuntimeException e) {
+            dirty.set(true);
+            throw e;
+        }
+    }
+
+    private void write() throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            Map<String, Rings> snapshot = Map.copyOf(categories);
+            out.writeInt(snapshot.size());
+            for (Map.Entry<String, Rings> e : snapshot.entrySet()) {
+                out.writeUTF(e.getKey());
+                e.getValue().writeTo(out);
+            }
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * The rings of one category. Guarded by {@code this}.
+     */
+    private static final class Rings {
+        private final int[][] buckets = new int[RESOLUTIONS.length][];
+        private final int[][] counts = new int[RESOLUTIONS.length][];
+
+        Rings() {
+            for (Resolution r : RESOLUTIONS) {
+                buckets[r.ordinal()] = new int[r.length];
+                counts[r.ordinal()] = new int[r.length];
+            }
+        }
+
+        synchronized void add(long timestamp) {
+            for (Resolution r : RESOLUTIONS) {
+                merge(r, (int) (timestamp / r.millis), 1);
+            }
+        }
+
+        synchronized void merge(Resolution r, int bucket, int count) {
+            int[] b = buckets[r.ordinal()];
+            int[] c = counts[r.ordinal()];
+            int slot = Math.floorMod(bucket, r.length);
+            if (b[slot] == bucket) {
+                c[slot] += count;
+            } else if (b[slot] < bucket || c[slot] == 0) {
+                // the slot held a bucket that fell out of the ring
+                b[slot] = bucket;
+                c[slot] = count;
+            }
+            // else the bucket is already older than the ring and is dropped
+        }
+
+        synchronized int[] series(Resolution r, long now, int length) {
+            int[] b = buckets[r.ordinal()];
+            int[] c = counts[r.ordinal()];
+            int[] series = new int[length];
+            int last = (int) (now / r.millis);
+            for (int i = 0; i < length; i++) {
+                int bucket = last - length + 1 + i;
+                int slot = Math.floorMod(bucket, r.length);
+                series[i] = b[slot] == bucket ? c[slot] : 0;
+            }
+            return series;
+        }
+
+        synchronized void writeTo(DataOutputStream out) throws IOException {
+            for (Resolution r : RESOLUTIONS) {
+                int[] b = buckets[r.ordinal()];
+                int[] c = counts[r.ordinal()];
+                int slots = 0;
+                for (int count : c) {
+                    if (count != 0) {
+                        slots++;
+                    }
+                }
+                out.writeInt(slots);
+                for (int i = 0; i < c.length; i++) {
+                    if (c[i] != 0) {
+                        out.writeInt(b[i]);
+                        out.writeInt(c[i]);
+                    }
+                }
+            }
+        }
+    }
+}
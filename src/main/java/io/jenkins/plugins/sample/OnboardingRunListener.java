@@ -0,0 +1,89 @@
+package io.jenkins.plugins.sample;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.model.Result;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.model.listeners.RunListener;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Records onboarding history when a build that ran an {@link OnboardingTask} completes.
+ * <p>
+ * The categories a build selected are kept in memory until then, by {@link Run#getExternalizableId()}, rather than as
+ * an action of the build, so nothing is added to its {@code build.xml}. A build resumed after a restart therefore only
+ * records the categories it selects after the restart.
+ * <p>
+ * Recording only appends to the in-memory {@link BuildHistory} and queues a {@link PayloadDelivery} event; writing
+ * either to disk or the network happens asynchronously, so completing builds are not held up.
+ */
+@Extension
+public class OnboardingRunListener extends RunListener<Run<?, ?>> {
+
+    private static final ConcurrentMap<String, List<Selection>> SELECTIONS = new ConcurrentHashMap<>();
+
+    /**
+     * Remembers that the running build selected the category, to be recorded once it completes.
+     */
+    static void selected(Run<?, ?> run, String categoryUuid, String categoryName) {
+        SELECTIONS
+                .computeIfAbsent(run.getExternalizableId(), k -> new CopyOnWriteArrayList<>())
+                .add(new Selection(categoryUuid, categoryName));
+    }
+
+    @Override
+    public void onCompleted(Run<?, ?> run, @NonNull TaskListener listener) {
+        List<Selection> selections = SELECTIONS.remove(run.getExternalizableId());
+        if (selections == null) {
+            return;
+        }
+        OnboardingPluginConfig config = OnboardingPluginConfig.get();
+        for (Selection selection : selections) {
+            Result result = run.getResult();
+            long duration = run.getDuration() > 0
+                    ? run.getDuration()
+                    : Math.max(0, System.currentTimeMillis() - run.getStartTimeInMillis());
+            BuildHistory.get()
+                    .record(
+                            selection.categoryUuid,
+                            run.getParent().getFullName(),
+                            run.getParent().getFullDisplayName(),
+                            run.getNumber(),
+                            selection.categoryName,
+                            result != null ? result.toString() : null,
+                            run.getStartTimeInMillis(),
+                            duration);
+
+            if (config != null && config.getConnectionConfig()) {
+                PayloadDelivery.get()
+                        .enqueue(new PayloadDelivery.Event(
+                                run.getParent().getFullName(),
+                                run.getNumber(),
+                                selection.categoryUuid,
+                                selection.categoryName,
+                                System.currentTimeMillis(),
+                                result != null ? result.toString() : null,
+                                duration));
+            }
+        }
+    }
+
+    @Override
+    public void onDeleted(Run<?, ?> run) {
+        SELECTIONS.remove(run.getExternalizableId());
+    }
+
+    private static final class Selection {
+        private final String categoryUuid;
+        private final String categoryName;
+
+        Selection(String categoryUuid, String categoryName) {
+            this.categoryUuid = categoryUuid;
+            this.categoryName = categoryName;
+        }
+    }
+}
@@ -1,21 +1,37 @@
 package io.jenkins.plugins.sample;
 
+import hudson.AbortException;
 import hudson.Extension;
+import hudson.FilePath;
 import hudson.Launcher;
-import hudson.model.AbstractBuild;
 import hudson.model.AbstractProject;
-import hudson.model.BuildListener;
+import hudson.model.Run;
+import hudson.model.TaskListener;
 import hudson.tasks.BuildStepDescriptor;
 import hudson.tasks.Builder;
 import hudson.util.ListBoxModel;
 import java.io.IOException;
+import java.util.List;
 import jenkins.model.GlobalConfiguration;
+import jenkins.model.Jenkins;
+import jenkins.tasks.SimpleBuildStep;
+import jenkins.util.SystemProperties;
+import org.jenkinsci.Symbol;
 import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+import org.kohsuke.stapler.QueryParameter;
 
-public class OnboardingTask extends Builder {
+public class OnboardingTask extends Builder implements SimpleBuildStep {
 
     private final String categoryUuid;
 
+    /**
+     * Workspace-relative path of a file to send to the onboarding endpoint, if any.
+     */
+    private String payloadFile;
+
+    private boolean gzipPayload;
+
     @DataBoundConstructor
     public OnboardingTask(String categoryUuid) {
         this.categoryUuid = categoryUuid;
@@ -25,34 +41,94 @@ public class OnboardingTask extends Builder {
         return categoryUuid;
     }
 
+    public String getPayloadFile() {
+        return payloadFile;
+    }
+
+    @DataBoundSetter
+    public void setPayloadFile(String payloadFile) {
+        this.payloadFile = payloadFile == null || payloadFile.trim().isEmpty() ? null : payloadFile.trim();
+    }
+
+    public boolean isGzipPayload() {
+        return gzipPayload;
+    }
+
+    @DataBoundSetter
+    public void setGzipPayload(boolean gzipPayload) {
+        this.gzipPayload = gzipPayload;
+    }
+
+    /**
+     * Only resolves the category and hands it to {@link OnboardingRunListener}, which writes the history record once
+     * the build has completed. When called as the {@code onboard} Pipeline step this runs on a background thread rather
+     * than the CPS VM thread.
+     */
     @Override
-    public boolean perform(AbstractBuild<?, ?> build, Launcher launcher, BuildListener listener)
+    public void perform(Run<?, ?> run, FilePath workspace, Launcher launcher, TaskListener listener)
             throws InterruptedException, IOException {
+        long start = System.nanoTime();
+        boolean succeeded = false;
+        try {
+            OnboardingPluginConfig config = GlobalConfiguration.all().get(OnboardingPluginConfig.class);
 
-        OnboardingPluginConfig config = GlobalConfiguration.all().get(OnboardingPluginConfig.class);
+            assert config != null;
+            String categoryName = config.getCategoryName(categoryUuid);
 
-        assert config != null;
-        String categoryName = config.getCategories().stream()
-                .filter(c -> c.getUuid().equals(categoryUuid))
-                .map(OnboardingPluginConfig.Category::getCategoryName)
-                .findFirst()
-                .orElse("Unknown Category");
+            listener.getLogger().println("Selected Category: " + categoryName);
 
-        listener.getLogger().println("Selected Category: " + categoryName);
+            OnboardingRunListener.selected(run, categoryUuid, categoryName);
 
-        BuildHistory history = BuildHistory.load();
-        history.updateCategoryJob(this.categoryUuid, build.getParent().getFullName());
-        history.addRecord(build.getParent().getFullDisplayName(), build.getNumber(), categoryName);
+            if (payloadFile != null) {
+                sendPayloadFile(workspace, config, listener);
+            }
+            succeeded = true;
+        } finally {
+            OnboardingMetrics.TASK_PERFORM.observe(start, succeeded);
+        }
+    }
 
-        return true;
+    private void sendPayloadFile(FilePath workspace, OnboardingPluginConfig config, TaskListener listener)
+            throws IOException, InterruptedException {
+        if (!config.getConnectionConfig()) {
+            throw new AbortException("Cannot send " + payloadFile + ": the onboarding connection is not configured");
+        }
+        FilePath file = workspace.child(payloadFile);
+        if (!file.exists()) {
+            throw new AbortException("Payload file " + payloadFile + " does not exist in the workspace");
+        }
+        listener.getLogger().println("Sending payload file: " + payloadFile);
+        int code = file.act(new StreamPayloadCallable(
+                config.endpointUrl(null),
+                OnboardingHttpClient.basicAuthorization(config.getUserName(), config.getPassword()),
+                Jenkins.get().getProxy(),
+                (int) config.connectTimeout().toMillis(),
+                (int) config.readTimeout().toMillis(),
+                gzipPayload));
+        if (code / 100 != 2) {
+            throw new AbortException("Server rejected payload file. Status: " + code);
+        }
+        listener.getLogger().println("Payload file sent successfully");
     }
 
+    @Symbol("onboard")
     @Extension
     public static final class DescriptorImpl extends BuildStepDescriptor<Builder> {
 
+        /**
+         * With more categories than this the config page asks for a search term and lists only the best matches.
+         */
+        static final int TYPEAHEAD_THRESHOLD =
+                SystemProperties.getInteger(OnboardingTask.class.getName() + ".typeaheadThreshold", 200);
+
+        static final int TYPEAHEAD_RESULTS =
+                SystemProperties.getInteger(OnboardingTask.class.getName() + ".typeaheadResults", 25);
+
+        private transient volatile CachedItems cachedItems;
+
         @Override
         public boolean isApplicable(Class<? extends AbstractProject> aClass) {
-            return "hudson.model.FreeStyleProject".equals(aClass.getName());
+            return true;
         }
 
         @Override
@@ -60,16 +136,70 @@ public class OnboardingTask extends Builder {
             return "Onboarding Task";
         }
 
-        public ListBoxModel doFillCategoryUuidItems() {
-            ListBoxModel items = new ListBoxModel();
+        public boolean isTypeahead() {
+            OnboardingPluginConfig config = GlobalConfiguration.all().get(OnboardingPluginConfig.class);
+            return config != null && config.getCategorySearchIndex().size() > TYPEAHEAD_THRESHOLD;
+        }
+
+        /**
+         * @return the name of the category, or an empty string; the initial search term of the typeahead
+         */
+        public String getCategoryName(String uuid) {
             OnboardingPluginConfig config = GlobalConfiguration.all().get(OnboardingPluginConfig.class);
+            OnboardingPluginConfig.Category category = config != null ? config.getCategory(uuid) : null;
+            return category != null ? category.getCategoryName() : "";
+        }
 
-            if (config != null && config.getCategories() != null) {
-                for (OnboardingPluginConfig.Category c : config.getCategories()) {
+        /**
+         * Lists all categories, or in {@link #isTypeahead() typeahead} mode the best matches of
+         * {@code categoryFilter}. The names and values of the full list are collected once per
+         * {@link OnboardingPluginConfig#getCategoriesVersion() version} of the categories; every request gets a model
+         * of its own, as callers may modify it and its options.
+         */
+        public ListBoxModel doFillCategoryUuidItems(@QueryParameter String categoryFilter) {
+            OnboardingPluginConfig config = GlobalConfiguration.all().get(OnboardingPluginConfig.class);
+            if (config == null) {
+                return new ListBoxModel();
+            }
+            if (isTypeahead()) {
+                ListBoxModel items = new ListBoxModel();
+                for (OnboardingPluginConfig.Category c :
+                        config.getCategorySearchIndex().search(categoryFilter, TYPEAHEAD_RESULTS)) {
                     items.add(c.getCategoryName(), c.getUuid());
                 }
+                return items;
+            }
+            long version = config.getCategoriesVersion();
+            CachedItems cached = cachedItems;
+            if (cached == null || cached.version != version) {
+                List<OnboardingPluginConfig.Category> categories =
+                        config.getCategories() != null ? config.getCategories() : List.of();
+                String[] names = new String[categories.size()];
+                String[] values = new String[categories.size()];
+                for (int i = 0; i < names.length; i++) {
+                    names[i] = categories.get(i).getCategoryName();
+                    values[i] = categories.get(i).getUuid();
+                }
+                cached = new CachedItems(version, names, values);
+                cachedItems = cached;
+            }
+            ListBoxModel items = new ListBoxModel(cached.names.length);
+            for (int i = 0; i < cached.names.length; i++) {
+                items.add(cached.names[i], cached.values[i]);
             }
             return items;
         }
+
+        private static final class CachedItems {
+            final long version;
+            final String[] names;
+            final String[] values;
+
+            CachedItems(long version, String[] names, String[] values) {
+                this.version = version;
+                this.names = names;
+                this.values = values;
+            }
+        }
     }
 }
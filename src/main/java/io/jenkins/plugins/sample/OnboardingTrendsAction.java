@@ -0,0 +1,112 @@
+package io.jenkins.plugins.sample;
+
+import hudson.Extension;
+import hudson.model.RootAction;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import jenkins.model.Jenkins;
+
+/**
+ * Builds per category over the last hour, two days or month, at {@code JENKINS_URL/onboarding-trends/}, drawn from
+ * the {@link OnboardingRollups} of {@link BuildHistory}.
+ */
+@Extension
+public class OnboardingTrendsAction implements RootAction {
+
+    @Override
+    public String getIconFileName() {
+        return Jenkins.get().hasPermission(Jenkins.SYSTEM_READ) ? "graph.png" : null;
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "Onboarding Trends";
+    }
+
+    @Override
+    public String getUrlName() {
+        return "onboarding-trends";
+    }
+
+    public List<String> getResolutions() {
+        List<String> names = new ArrayList<>();
+        for (OnboardingRollups.Resolution r : OnboardingRollups.Resolution.values()) {
+            names.add(r.name().toLowerCase(Locale.ROOT));
+        }
+        return names;
+    }
+
+    /**
+     * @return the resolution shown for the given request parameter
+     */
+    public String getResolution(String name) {
+        return OnboardingRollups.Resolution.of(name).name().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * @param resolution {@code minute}, {@code hour} or {@code day}; defaults to {@code hour}
+     * @return the trend of each category with builds in the window, by category name
+     */
+    public List<Trend> getTrends(String resolution) {
+        Jenkins.get().checkPermission(Jenkins.SYSTEM_READ);
+        OnboardingRollups.Resolution r = OnboardingRollups.Resolution.of(resolution);
+        OnboardingPluginConfig config = OnboardingPluginConfig.get();
+        List<Trend> trends = new ArrayList<>();
+        for (Map.Entry<String, int[]> e : BuildHistory.get()
+                .getRollups()
+                .trends(r, System.currentTimeMillis(), r.length)
+                .entrySet()) {
+            Trend trend = new Trend(config.getCategoryName(e.getKey()), e.getValue());
+            if (trend.getTotal() > 0) {
+                trends.add(trend);
+            }
+        }
+        trends.sort(Comparator.comparing(Trend::getCategoryName));
+        return trends;
+    }
+
+    public static final class Trend {
+
+        private final String categoryName;
+
+        /** Oldest first. */
+        private final int[] counts;
+
+        Trend(String categoryName, int[] counts) {
+            this.categoryName = categoryName;
+            this.counts = counts;
+        }
+
+        public String getCategoryName() {
+            return categoryName;
+        }
+
+        public long getTotal() {
+            return Arrays.stream(counts).asLongStream().sum();
+        }
+
+        public int getMax() {
+            return Arrays.stream(counts).max().orElse(0);
+        }
+
+        public int[] getCounts() {
+            return counts.clone();
+        }
+
+        /**
+         * @return the bar height of each bucket, in percent of the busiest one
+         */
+        public List<Integer> getHeights() {
+            int max = Math.max(1, getMax());
+            List<Integer> heights = new ArrayList<>(counts.length);
+            for (int count : counts) {
+                heights.add((int) ((long) count * 100 / max));
+            }
+            return heights;
+        }
+    }
+}
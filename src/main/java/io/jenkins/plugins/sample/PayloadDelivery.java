@@ -0,0 +1,408 @@
+package io.jenkins.plugins.sample;
+
+import hudson.Extension;
+import hudson.ExtensionList;
+import hudson.init.Terminator;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import hudson.util.Secret;
+import java.io.File;
+import java.io.IOException;
+import java.net.http.HttpRequest;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.model.Jenkins;
+import jenkins.util.SystemProperties;
+import net.sf.json.JSONException;
+import net.sf.json.JSONObject;
+
+/**
+ * Delivers onboarding events to the configured endpoint without blocking the builds that produce them.
+ * <p>
+ * Events are queued in memory and sent by a thread of their own, so a slow endpoint holds up nothing else, in
+ * batches of up to {@link #BATCH_SIZE} newline-delimited JSON lines, at most {@link #BATCH_DELAY_MS} after the first
+ * one was queued, over the keep-alive connections of {@link OnboardingHttpClient}. Batches that cannot be delivered,
+ * and events that do not fit in the bounded queue, are spooled to {@code JENKINS_HOME/onboarding-spool} and retried
+ * with exponential backoff, also after a restart. While delivery is disabled, events are spooled as well and sent
+ * once it is enabled again. Spooled events never contain the configured payload; it is added when a batch is sent.
+ */
+@Extension
+public class PayloadDelivery {
+
+    private static final Logger LOGGER = Logger.getLogger(PayloadDelivery.class.getName());
+
+    static final int BATCH_SIZE = SystemProperties.getInteger(PayloadDelivery.class.getName() + ".batchSize", 500);
+
+    static final long BATCH_DELAY_MS =
+            SystemProperties.getLong(PayloadDelivery.class.getName() + ".batchDelayMillis", 2000L);
+
+    private static final int QUEUE_CAPACITY =
+            SystemProperties.getInteger(PayloadDelivery.class.getName() + ".queueCapacity", 10000);
+
+    private static final long MAX_BACKOFF_MS = TimeUnit.MINUTES.toMillis(5);
+
+    private final File spoolDir;
+    private final BlockingQueue<String> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+
+    /**
+     * Events that did not fit in the queue, spooled a batch at a time. Guarded by itself.
+     */
+    private final List<String> overflow = new ArrayList<>();
+    private final ScheduledThreadPoolExecutor sender = newSender();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final AtomicLong spoolSequence = new AtomicLong();
+    private final AtomicLong delivered = new AtomicLong();
+
+    private volatile long retryAt;
+
+    private volatile Future<?> pending;
+
+    private volatile boolean closed;
+
+    /**
+     * Only accessed from the sender thread.
+     */
+    private long backoffMs;
+
+    public PayloadDelivery() {
+        this(new File(Jenkins.get().getRootDir(), "onboarding-spool"));
+    }
+
+    PayloadDelivery(File spoolDir) {
+        this.spoolDir = spoolDir;
+        if (spoolFiles().length > 0) {
+            schedule(0);
+        }
+    }
+
+    private static ScheduledThreadPoolExecutor newSender() {
+        ScheduledThreadPoolExecutor sender = new ScheduledThreadPoolExecutor(
+                1, new NamingThreadFactory(new DaemonThreadFactory(), "Onboarding payload delivery"));
+        // retries waiting for their backoff are dropped on close(), their events are in the spool
+        sender.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        return sender;
+    }
+
+    public static PayloadDelivery get() {
+        return ExtensionList.lookupSingleton(PayloadDelivery.class);
+    }
+
+    /**
+     * Queues an event for delivery. Never blocks on the network; spills to the spool a batch at a time if the queue
+     * is full.
+     */
+    public void enqueue(Event event) {
+        String line = event.toJson().toString();
+        if (!queue.offer(line)) {
+            List<String> batch = null;
+            synchronized (overflow) {
+                overflow.add(line);
+                if (overflow.size() >= BATCH_SIZE) {
+                    batch = takeOverflow();
+                }
+            }
+            if (batch != null) {
+                try {
+                    spool(batch);
+                } catch (IOException e) {
+                    LOGGER.log(
+                            Level.WARNING,
+                            "Dropping " + batch.size() + " onboarding events, the queue is full and spooling failed",
+                            e);
+                }
+            }
+        }
+        schedule(queue.size() >= BATCH_SIZE ? 0 : BATCH_DELAY_MS);
+    }
+
+    /**
+     * @return the overflowing events, which are removed
+     */
+    private List<String> takeOverflow() {
+        synchronized (overflow) {
+            List<String> batch = new ArrayList<>(overflow);
+            overflow.clear();
+            return batch;
+        }
+    }
+
+    /**
+     * @return number of events delivered since startup
+     */
+    public long getDelivered() {
+        return delivered.get();
+    }
+
+    /**
+     * @return number of events waiting in memory
+     */
+    public int getQueued() {
+        return queue.size();
+    }
+
+    /**
+     * Runs a delivery attempt on the sender thread and waits for it, ignoring any backoff.
+     */
+    void deliverNow() throws Exception {
+        retryAt = 0;
+        sender.submit(this::deliver).get();
+    }
+
+    /**
+     * Sends what was spooled while delivery was disabled, or is waiting for a retry, right away.
+     */
+    void resume() {
+        retryAt = 0;
+        Future<?> next = pending;
+        if (next != null) {
+            next.cancel(false);
+        }
+        scheduled.set(false);
+        if (spoolFiles().length > 0 || !queue.isEmpty()) {
+            schedule(0);
+        }
+    }
+
+    /**
+     * Called when {@link OnboardingPluginConfig#getConnectionConfig() delivery} is enabled.
+     */
+    static void connectionEnabled() {
+        PayloadDelivery delivery = ExtensionList.lookup(PayloadDelivery.class).get(PayloadDelivery.class);
+        if (delivery != null) {
+            delivery.resume();
+        }
+    }
+
+    /**
+     * Stops the sender thread once a running delivery is done, dropping scheduled ones, and spools what is still
+     * queued.
+     */
+    void close() throws InterruptedException {
+        closed = true;
+        sender.shutdown();
+        sender.awaitTermination(10, TimeUnit.SECONDS);
+        spoolQuietly();
+    }
+
+    private void schedule(long delayMillis) {
+        if (!closed && scheduled.compareAndSet(false, true)) {
+            long delay = Math.max(delayMillis, retryAt - System.currentTimeMillis());
+            try {
+                pending = sender.schedule(this::deliver, Math.max(0, delay), TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // closed meanwhile
+            }
+        }
+    }
+
+    private void deliver() {
+        scheduled.set(false);
+        if (closed) {
+            return;
+        }
+        OnboardingPluginConfig config = OnboardingPluginConfig.get();
+        if (config == null || !config.getConnectionConfig()) {
+            spoolQuietly();
+            return;
+        }
+        try {
+            for (File f : spoolFiles()) {
+                List<String> lines;
+                try {
+                    lines = Files.readAllLines(f.toPath(), StandardCharsets.UTF_8);
+                } catch (CharacterCodingException e) {
+                    quarantine(f, "it is not valid UTF-8");
+                    continue;
+                }
+                int corrupt = send(config, lines);
+                if (corrupt > 0) {
+                    quarantine(f, corrupt + " of its lines are not valid JSON; the others were delivered");
+                } else {
+                    Files.delete(f.toPath());
+                }
+            }
+            List<String> batch = new ArrayList<>(BATCH_SIZE);
+            while (queue.drainTo(batch, BATCH_SIZE) > 0) {
+                try {
+                    send(config, batch);
+                } catch (IOException e) {
+                    spool(batch);
+                    throw e;
+                }
+                batch.clear();
+            }
+            batch = takeOverflow();
+            try {
+                send(config, batch);
+            } catch (IOException e) {
+                spool(batch);
+                throw e;
+            }
+            backoffMs = 0;
+            retryAt = 0;
+        } catch (IOException | RuntimeException e) {
+            backoffMs = backoffMs == 0 ? 1000 : Math.min(backoffMs * 2, MAX_BACKOFF_MS);
+            retryAt = System.currentTimeMillis() + backoffMs;
+            LOGGER.log(Level.FINE, "Onboarding delivery failed, retrying in " + backoffMs + "ms", e);
+            schedule(backoffMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Sends the lines as one batch, skipping those that are not JSON objects.
+     *
+     * @return the number of lines skipped
+     */
+    private int send(OnboardingPluginConfig config, List<String> lines) throws IOException, InterruptedException {
+        String payload = Secret.toString(config.getPayload());
+        StringBuilder body = new StringBuilder();
+        int events = 0;
+        int corrupt = 0;
+        for (String line : lines) {
+            if (line.isBlank()) {
+                continue;
+            }
+            JSONObject event;
+            try {
+                event = JSONObject.fromObject(line);
+            } catch (JSONException e) {
+                corrupt++;
+                continue;
+            }
+            event.put("payload", payload);
+            body.append(event).append('\n');
+            events++;
+        }
+        if (events == 0) {
+            return corrupt;
+        }
+        int code = OnboardingHttpClient.shared(config.connectTimeout())
+                .post(
+                        config.endpointUrl(null),
+                        config.getUserName(),
+                        config.getPassword(),
+                        config.readTimeout(),
+                        "application/x-ndjson",
+                        HttpRequest.BodyPublishers.ofString(body.toString(), StandardCharsets.UTF_8));
+        if (code / 100 != 2) {
+            throw new IOException("Onboarding endpoint returned status code " + code);
+        }
+        delivered.addAndGet(events);
+        return corrupt;
+    }
+
+    /**
+     * Moves a spool file that cannot be delivered as it is out of the way, keeping it for inspection.
+     */
+    private void quarantine(File f, String reason) throws IOException {
+        File corrupt = new File(f.getPath() + ".corrupt");
+        Files.move(f.toPath(), corrupt.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        LOGGER.log(Level.WARNING, "Set aside spooled onboarding events {0}: {1}", new Object[] {corrupt, reason});
+    }
+
+    /**
+     * Writes the lines to a new spool file. The temporary file is renamed into place so a partial file is never read.
+     */
+    private void spool(List<String> lines) throws IOException {
+        Files.createDirectories(spoolDir.toPath());
+        String name = String.format(
+                "batch-%013d-%06d.ndjson", System.currentTimeMillis(), spoolSequence.incrementAndGet() % 1000000);
+        File tmp = new File(spoolDir, name + ".tmp");
+        Files.write(tmp.toPath(), lines, StandardCharsets.UTF_8);
+        Files.move(tmp.toPath(), new File(spoolDir, name).toPath(), StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void spoolQuietly() {
+        List<String> pending = new ArrayList<>();
+        queue.drainTo(pending);
+        pending.addAll(takeOverflow());
+        for (int from = 0; from < pending.size(); from += BATCH_SIZE) {
+            List<String> batch = pending.subList(from, Math.min(from + BATCH_SIZE, pending.size()));
+            try {
+                spool(batch);
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Failed to spool " + batch.size() + " onboarding events", e);
+            }
+        }
+    }
+
+    /**
+     * @return spooled batches, oldest first
+     */
+    private File[] spoolFiles() {
+        File[] files = spoolDir.listFiles((dir, name) -> name.startsWith("batch-") && name.endsWith(".ndjson"));
+        if (files == null) {
+            return new File[0];
+        }
+        Arrays.sort(files);
+        return files;
+    }
+
+    @Terminator
+    public static void spoolOnShutdown() throws InterruptedException {
+        PayloadDelivery delivery = ExtensionList.lookup(PayloadDelivery.class).get(PayloadDelivery.class);
+        if (delivery != null) {
+            delivery.close();
+        }
+    }
+
+    public static final class Event {
+        private final String jobFullName;
+        private final int buildNumber;
+        private final String categoryUuid;
+        private final String categoryName;
+        private final long timestamp;
+        private final String result;
+        private final long duration;
+
+        public Event(String jobFullName, int buildNumber, String categoryUuid, String categoryName, long timestamp) {
+            this(jobFullName, buildNumber, categoryUuid, categoryName, timestamp, null, 0);
+        }
+
+        public Event(
+                String jobFullName,
+                int buildNumber,
+                String categoryUuid,
+                String categoryName,
+                long timestamp,
+                String result,
+                long duration) {
+            this.jobFullName = jobFullName;
+            this.buildNumber = buildNumber;
+            this.categoryUuid = categoryUuid;
+            this.categoryName = categoryName;
+            this.timestamp = timestamp;
+            this.result = result;
+            this.duration = duration;
+        }
+
+        JSONObject toJson() {
+            JSONObject json = new JSONObject();
+            json.put("job", jobFullName);
+            json.put("build", buildNumber);
+            json.put("categoryUuid", categoryUuid);
+            json.put("categoryName", categoryName);
+            json.put("timestamp", timestamp);
+            json.put("result", result);
+            json.put("duration", duration);
+            return json;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package io.jenkins.plugins.sample;
+
+import hudson.ProxyConfiguration;
+import hudson.remoting.VirtualChannel;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.URI;
+import java.net.URL;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.GZIPOutputStream;
+import jenkins.MasterToSlaveFileCallable;
+
+/**
+ * Posts a workspace file to the onboarding endpoint from the agent that holds it.
+ * <p>
+ * The file is streamed with chunked transfer encoding straight from its {@link FileChannel}, optionally through gzip,
+ * so it is neither copied to the controller nor held in memory in full.
+ * <p>
+ * Everything that needs the controller is resolved when the callable is created: the {@code Authorization} header
+ * and the Jenkins proxy to use for the endpoint. Both headers are sent to the agent with the callable, and Basic
+ * authorization is merely Base64-encoded, so code running on the agent can read the endpoint and proxy credentials.
+ */
+final class StreamPayloadCallable extends MasterToSlaveFileCallable<Integer> {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private final String url;
+    private final String authorization;
+
+    /** {@code null} to connect directly. */
+    private final String proxyHost;
+
+    private final int proxyPort;
+
+    /** {@code null} unless the proxy needs credentials. */
+    private final String proxyAuthorization;
+
+    private final int connectTimeoutMillis;
+    private final int readTimeoutMillis;
+    private final boolean gzip;
+
+    /**
+     * @param authorization the value of the {@code Authorization} header
+     * @param proxy the proxy configuration of Jenkins, or {@code null} if there is none
+     */
+    StreamPayloadCallable(
+            String url,
+            String authorization,
+            ProxyConfiguration proxy,
+            int connectTimeoutMillis,
+            int readTimeoutMillis,
+            boolean gzip) {
+        this.url = url;
+        this.authorization = authorization;
+        Proxy resolved = proxy != null ? proxy.createProxy(URI.create(url).getHost()) : Proxy.NO_PROXY;
+        if (resolved.type() == Proxy.Type.HTTP && resolved.address() instanceof InetSocketAddress address) {
+            this.proxyHost = address.getHostString();
+            this.proxyPort = address.getPort();
+            this.proxyAuthorization = proxy.getUserName() != null && !proxy.getUserName().isEmpty()
+                    ? OnboardingHttpClient.basicAuthorization(proxy.getUserName(), proxy.getSecretPassword())
+                    : null;
+        } else {
+            this.proxyHost = null;
+            this.proxyPort = 0;
+            this.proxyAuthorization = null;
+        }
+        this.connectTimeoutMillis = connectTimeoutMillis;
+        this.readTimeoutMillis = readTimeoutMillis;
+        this.gzip = gzip;
+    }
+
+    @Override
+    public Integer invoke(File f, VirtualChannel channel) throws IOException {
+        Proxy proxy = proxyHost != null
+                ? new Proxy(Proxy.Type.HTTP, new InetSocketAddress(proxyHost, proxyPort))
+                : Proxy.NO_PROXY;
+        HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection(proxy);
+        try {
+            conn.setRequestMethod("POST");
+            conn.setDoOutput(true);
+            conn.setConnectTimeout(connectTimeoutMillis);
+            conn.setReadTimeout(readTimeoutMillis);
+            conn.setChunkedStreamingMode(CHUNK_SIZE);
+            conn.setRequestProperty("Authorization", authorization);
+            if (proxyAuthorization != null) {
+                conn.setRequestProperty("Proxy-Authorization", proxyAuthorization);
+            }
+            conn.setRequestProperty("Content-Type", "application/octet-stream");
+            if (gzip) {
+                conn.setRequestProperty("Content-Encoding", "gzip");
+            }
+
+            try (FileChannel in = FileChannel.open(f.toPath(), StandardOpenOption.READ);
+                    OutputStream raw = conn.getOutputStream();
+                    OutputStream out = gzip ? new GZIPOutputStream(raw, CHUNK_SIZE) : raw) {
+                WritableByteChannel target = Channels.newChannel(out);
+                long size = in.size();
+                long position = 0;
+                while (position < size) {
+                    long transferred = in.transferTo(position, size - position, target);
+                    if (transferred <= 0) {
+                        // the file was truncated while sending
+                        break;
+                    }
+                    position += transferred;
+                }
+            }
+            return conn.getResponseCode();
+        } finally {
+            conn.disconnect();
+        }
+    }
+}
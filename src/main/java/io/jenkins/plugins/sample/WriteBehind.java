@@ -0,0 +1,61 @@
+package io.jenkins.plugins.sample;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.util.Timer;
+
+/**
+ * Coalesces any number of save requests into a single delayed write on the shared {@link Timer}.
+ */
+final class WriteBehind {
+
+    @FunctionalInterface
+    interface Writer {
+        void write() throws IOException;
+    }
+
+    private static final Logger LOGGER = Logger.getLogger(WriteBehind.class.getName());
+
+    private final String name;
+    private final long delayMillis;
+    private final Writer writer;
+    private final AtomicBoolean pending = new AtomicBoolean();
+
+    WriteBehind(String name, long delayMillis, Writer writer) {
+        this.name = name;
+        this.delayMillis = delayMillis;
+        this.writer = writer;
+    }
+
+    /**
+     * Schedules a write unless one is already pending; the pending write will pick up this change.
+     */
+    void request() {
+        if (pending.compareAndSet(false, true)) {
+            Timer.get().schedule(this::flushQuietly, delayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    boolean isPending() {
+        return pending.get();
+    }
+
+    /**
+     * Writes immediately. The pending flag is cleared before writing so changes made during the write are not lost.
+     */
+    synchronized void flush() throws IOException {
+        pending.set(false);
+        writer.write();
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (IOException | RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Failed to write " + name, e);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+document.addEventListener("DOMContentLoaded", function () {
+    document.querySelectorAll(".onboarding-history").forEach(function (container) {
+        var rows = container.querySelector(".onboarding-history-rows");
+        var more = container.querySelector(".onboarding-history-more");
+        var category = container.querySelector(".onboarding-history-category");
+        var search = container.querySelector(".onboarding-history-search");
+        var rootUrl = container.dataset.rootUrl;
+        var next = null;
+        var typing = null;
+
+        function cell(content) {
+            var td = document.createElement("td");
+            td.className = "pane";
+            if (typeof content === "string") {
+                td.textContent = content;
+            } else {
+                td.appendChild(content);
+            }
+            return td;
+        }
+
+        function link(href, text) {
+            var a = document.createElement("a");
+            a.href = href;
+            a.className = "model-link inside";
+            a.textContent = text;
+            return a;
+        }
+
+        function message(text) {
+            var tr = document.createElement("tr");
+            var td = cell(text);
+            td.colSpan = 4;
+            tr.appendChild(td);
+            rows.appendChild(tr);
+        }
+
+        function load(reset) {
+            var url = container.dataset.url + "?category=" + encodeURIComponent(category.value);
+            if (search.value) {
+                url += "&q=" + encodeURIComponent(search.value);
+            }
+            if (!reset && next) {
+                url += "&before=" + encodeURIComponent(next);
+            }
+            fetch(url)
+                .then(function (rsp) {
+                    return rsp.json();
+                })
+                .then(function (json) {
+                    if (reset) {
+                        rows.textContent = "";
+                    }
+                    var data = json.data;
+                    data.records.forEach(function (record) {
+                        var jobUrl = rootUrl + "/job/" + record.jobName;
+                        var tr = document.createElement("tr");
+                        tr.appendChild(cell(link(jobUrl, record.jobName)));
+                        tr.appendChild(cell(link(jobUrl + "/" + record.buildNumber, "#" + record.buildNumber)));
+                        tr.appendChild(cell(record.categoryName || ""));
+                        tr.appendChild(cell(record.result || ""));
+                        rows.appendChild(tr);
+                    });
+                    if (reset && data.records.length === 0) {
+                        message(search.value ? "No matching builds." : "No builds recorded yet.");
+                    }
+                    if (data.partial && !data.next) {
+                        message("Older builds are still being loaded. Reload the page to see them.");
+                    }
+                    next = data.next;
+                    more.style.display = next ? "" : "none";
+                })
+                .catch(function () {
+                    rows.textContent = "";
+                    message("Failed to load the build history.");
+                });
+        }
+
+        more.addEventListener("click", function () {
+            load(false);
+        });
+        category.addEventListener("change", function () {
+            load(true);
+        });
+        search.addEventListener("input", function () {
+            clearTimeout(typing);
+            typing = setTimeout(function () {
+                load(true);
+            }, 250);
+        });
+        load(true);
+    });
+});
@@ -0,0 +1,101 @@
+package io.jenkins.plugins.sample;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import jenkins.benchmark.jmh.JmhBenchmark;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Recording into and loading a {@link BuildHistory} whose storage already holds {@code records} records.
+ */
+@JmhBenchmark
+public class BuildHistoryBenchmark {
+
+    private static final int CATEGORIES = 50;
+
+    @State(Scope.Benchmark)
+    public static class StoredHistory {
+
+        @Param({"1000", "100000", "1000000"})
+        public int records;
+
+        File dir;
+
+        File file;
+
+        BuildHistory history;
+
+        int next;
+
+        @Setup(Level.Trial)
+        public void store() throws IOException {
+            dir = Files.createTempDirectory("onboarding-history").toFile();
+            file = new File(dir, "history.xml");
+            FileHistoryStorage storage = new FileHistoryStorage(new File(dir, "onboarding-history"));
+            List<BuildHistory.BuildRecord> batch = new ArrayList<>();
+            long now = System.currentTimeMillis();
+            for (int i = 1; i <= records; i++) {
+                int category = i % CATEGORIES;
+                batch.add(new BuildHistory.BuildRecord(
+                        i,
+                        "folder/job-" + i % 1000,
+                        "folder » job-" + i % 1000,
+                        i,
+                        "uuid-" + category,
+                        "Category " + category,
+                        now - records + i,
+                        "SUCCESS",
+                        now - records + i - 100,
+                        100));
+                if (batch.size() == 10_000) {
+                    storage.append(batch);
+                    batch.clear();
+                }
+            }
+            storage.append(batch);
+            storage.close();
+            history = new BuildHistory(file);
+            // as the periodic compactor does, so memory stays bounded while appending
+            history.compact(BuildHistory.Retention.DEFAULT);
+        }
+
+        @TearDown(Level.Trial)
+        public void delete() throws IOException {
+            history.flush();
+            history.getStorage().close();
+            FileUtils.deleteDirectory(dir);
+        }
+    }
+
+    @Benchmark
+    public void append(StoredHistory state) {
+        int n = state.next++;
+        int category = n % CATEGORIES;
+        state.history.record(
+                "uuid-" + category,
+                "folder/job-" + n % 1000,
+                "folder » job-" + n % 1000,
+                n,
+                "Category " + category,
+                "SUCCESS",
+                0,
+                100);
+    }
+
+    @Benchmark
+    public BuildHistory load(StoredHistory state) throws IOException {
+        BuildHistory history = new BuildHistory(state.file);
+        history.getStorage().close();
+        return history;
+    }
+}
@@ -0,0 +1,401 @@
+package io.jenkins.plugins.sample;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class BuildHistoryTest {
+
+    @TempDir
+    File tmp;
+
+    @Test
+    void testConcurrentRecordsAreNotLost() throws Exception {
+        int builds = 500;
+        File file = new File(tmp, "history.xml");
+        BuildHistory history = new BuildHistory(file);
+
+        ExecutorService pool = Executors.newFixedThreadPool(32);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int i = 0; i < builds; i++) {
+            int number = i + 1;
+            pool.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                history.record("uuid-" + (number % 7), "job-" + number, "job-" + number, number, "category");
+            });
+        }
+        start.countDown();
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(1, TimeUnit.MINUTES));
+
+        assertEquals(builds, history.getRecords().size());
+        history.flush();
+        assertEquals(builds, new BuildHistory(file).getRecords().size());
+    }
+
+    @Test
+    void testLatestJobForCategory() throws Exception {
+        BuildHistory history = new BuildHistory(new File(tmp, "history.xml"));
+        assertEquals("N/A", history.getLatestJobForCategory("a"));
+        history.record("a", "folder/first", "folder » first", 1, "Category A");
+        history.record("a", "folder/second", "folder » second", 1, "Category A");
+        assertEquals("folder/second", history.getLatestJobForCategory("a"));
+    }
+
+    @Test
+    void testChangesAreWrittenBehindAfterADelay() throws Exception {
+        File file = new File(tmp, "history.xml");
+        BuildHistory history = new BuildHistory(file);
+        history.record("a", "job-a", "job-a", 1, "Category A");
+        history.record("a", "job-a", "job-a", 2, "Category A");
+        assertFalse(file.exists());
+        assertEquals(0, history.getStorage().maxId());
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (!file.exists() && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+        }
+        assertTrue(file.exists());
+        assertEquals(2, history.getStorage().maxId());
+        history.getStorage().close();
+
+        BuildHistory reloaded = new BuildHistory(file);
+        assertEquals(2, reloaded.size());
+        assertEquals(2, reloaded.getCategoryStats("a").getCount());
+        reloaded.getStorage().close();
+    }
+
+    @Test
+    void testReloadRestoresRecordsAndContinuesTheIds() throws Exception {
+        File file = new File(tmp, "history.xml");
+        BuildHistory history = new BuildHistory(file);
+        history.record("a", "folder/job-a", "job-a", 7, "Category A", "SUCCESS", 1000L, 250L);
+        history.record("b", "job-b", "job-b", 3, "Category B", "FAILURE", 2000L, 500L);
+        history.record("a", "folder/job-c", "job-c", 1, "Category A");
+        history.flush();
+        history.getStorage().close();
+
+        BuildHistory reloaded = new BuildHistory(file);
+        List<BuildHistory.BuildRecord> records = reloaded.getRecords();
+        assertEquals(3, records.size());
+        BuildHistory.BuildRecord first = records.get(2);
+        assertEquals(1, first.getId());
+        assertEquals("folder/job-a", first.getJobFullName());
+        assertEquals("job-a", first.getJobName());
+        assertEquals(7, first.getBuildNumber());
+        assertEquals("a", first.getCategoryUuid());
+        assertEquals("Category A", first.getCategoryName());
+        assertEquals("SUCCESS", first.getResult());
+        assertEquals(1000L, first.getStartTime());
+        assertEquals(250L, first.getDuration());
+        assertEquals("FAILURE", records.get(1).getResult());
+        assertEquals("folder/job-c", reloaded.getLatestJobForCategory("a"));
+        assertEquals(2, reloaded.getCategoryStats("a").getCount());
+        assertEquals(1, reloaded.getCategoryStats("b").getCount());
+
+        reloaded.record("b", "job-b", "job-b", 4, "Category B");
+        assertEquals(4, reloaded.getRecords().get(0).getId());
+        reloaded.getStorage().close();
+    }
+
+    @Test
+    void testCategoryStatsAreMaintainedAndRebuilt() throws Exception {
+        File file = new File(tmp, "history.xml");
+        BuildHistory history = new BuildHistory(file);
+        for (int i = 1; i <= 15; i++) {
+            history.record("a", "job-a", "job-a", i, "Category A");
+        }
+        history.record("b", "job-b", "job-b", 1, "Category B");
+
+        CategoryStats stats = history.getCategoryStats("a");
+        assertEquals(15, stats.getCount());
+        assertEquals(15, stats.getLastBuildNumber());
+        assertEquals(CategoryStats.RECENT_SIZE, stats.getRecentRecords().size());
+        assertEquals(15, stats.getRecentRecords().get(0).getBuildNumber());
+        assertEquals(0, history.getCategoryStats("missing").getCount());
+
+        history.flush();
+        CategoryStats reloaded = new BuildHistory(file).getCategoryStats("a");
+        assertEquals(15, reloaded.getCount());
+        assertEquals("job-a", reloaded.getLastJob());
+        assertEquals(15, reloaded.getRecentRecords().get(0).getBuildNumber());
+    }
+
+    @Test
+    void testCompactionArchivesOlderRecords() throws Exception {
+        File file = new File(tmp, "history.xml");
+        BuildHistory history = new BuildHistory(file);
+        for (int i = 1; i <= 30; i++) {
+            history.record(i % 2 == 0 ? "even" : "odd", "job", "job", i, "Category");
+        }
+
+        assertEquals(20, history.compact(new BuildHistory.Retention(10, 0, 0)));
+        assertEquals(10, history.size());
+
+        List<Integer> numbers = new ArrayList<>();
+        long before = Long.MAX_VALUE;
+        while (true) {
+            BuildHistory.Page page = history.getPage(before, 7, null);
+            page.getRecords().forEach(r -> numbers.add(r.getBuildNumber()));
+            if (page.getNext() == null) {
+                break;
+            }
+            before = page.getNext();
+        }
+        assertEquals(30, numbers.size());
+        assertEquals(30, numbers.get(0));
+        assertEquals(1, numbers.get(29));
+
+        history.flush();
+        BuildHistory reloaded = new BuildHistory(file);
+        assertEquals(10, reloaded.size());
+        assertEquals(15, reloaded.getCategoryStats("even").getCount());
+    }
+
+    @Test
+    void testXmlHistoryIsMigratedToTheLog() throws Exception {
+        File file = new File(tmp, "history.xml");
+        Files.writeString(
+                file.toPath(),
+                "<?xml version='1.1' encoding='UTF-8'?>\n"
+                        + "<onboarding-history><records>"
+                        + record(3, "job-a", "a")
+                        + record(4, "job-b", "a")
+                        + "</records>"
+                        + "<categoryJobs><entry><string>a</string><string>job-b</string></entry></categoryJobs>"
+                        + "<archivedCounts><entry><string>a</string><long>2</long></entry></archivedCounts>"
+                        + "</onboarding-history>",
+                StandardCharsets.UTF_8);
+        File archived = new File(tmp, "onboarding-history/segment-1-2.xml");
+        assertTrue(archived.getParentFile().mkdirs());
+        Files.writeString(
+                archived.toPath(),
+                "<onboarding-history-segment><records>" + record(1, "job-a", "a") + record(2, "job-a", "a")
+                        + "</records></onboarding-history-segment>",
+                StandardCharsets.UTF_8);
+
+        BuildHistory history = new BuildHistory(file);
+        assertEquals(4, history.size());
+        assertEquals(4, history.getCategoryStats("a").getCount());
+        assertEquals("job-b", history.getLatestJobForCategory("a"));
+        assertFalse(archived.exists());
+        assertFalse(Files.readString(file.toPath(), StandardCharsets.UTF_8).contains("<records>"));
+
+        history.record("a", "job-c", "job-c", 1, "Category A");
+        history.flush();
+        BuildHistory reloaded = new BuildHistory(file);
+        assertEquals(5, reloaded.size());
+        assertEquals(5, reloaded.getCategoryStats("a").getCount());
+        assertEquals(5, reloaded.getRecords().get(0).getId());
+        assertEquals(1, reloaded.getRecords().get(4).getId());
+    }
+
+    @Test
+    void testReadsAreServedBeforeLoadingAndWritesWaitForIt() throws Exception {
+        File file = new File(tmp, "history.xml");
+        BuildHistory history = new BuildHistory(file);
+        history.record("a", "job-a", "job-a", 1, "Category A");
+        history.record("a", "job-a", "job-a", 2, "Category A");
+        history.flush();
+        history.getStorage().close();
+
+        BuildHistory lazy = new BuildHistory(
+                file, new FileHistoryStorage(new File(tmp, "onboarding-history")), false);
+        assertFalse(lazy.isLoaded());
+        assertEquals(0, lazy.getRecords().size());
+        assertEquals(0, lazy.getPage(Long.MAX_VALUE, 10, null).getRecords().size());
+
+        lazy.record("a", "job-b", "job-b", 1, "Category A");
+        assertTrue(lazy.isLoaded());
+        assertEquals(3, lazy.getRecords().get(0).getId());
+        assertEquals(3, lazy.getCategoryStats("a").getCount());
+    }
+
+    @Test
+    void testSearchUsesTheIndexForStoredAndRecentRecords() throws Exception {
+        File file = new File(tmp, "history.xml");
+        BuildHistory history = new BuildHistory(file);
+        assertTrue(history.isIndexed());
+        for (int i = 1; i <= 6; i++) {
+            history.record(i % 2 == 0 ? "a" : "b", "folder/foo-bar", "foo-bar", i, "Category");
+            history.record("a", "folder/other", "other", i, "Category A");
+        }
+        // only the newest records stay in memory, the others are read back from the storage
+        history.compact(new BuildHistory.Retention(4, 0, 0));
+
+        HistoryStorage.Query all = new HistoryStorage.Query(Long.MAX_VALUE, 2, null);
+        BuildHistory.Page page = history.search("fo ba", all);
+        assertEquals(List.of(11L, 9L), ids(page));
+        page = history.search("fo ba", all.withBefore(page.getNext()));
+        assertEquals(List.of(7L, 5L), ids(page));
+        page = history.search("fo ba", all.withBefore(page.getNext()));
+        assertEquals(List.of(3L, 1L), ids(page));
+        assertEquals(null, page.getNext());
+
+        long now = System.currentTimeMillis();
+        HistoryStorage.Query category = new HistoryStorage.Query(Long.MAX_VALUE, 10, "a", null, 0, now + 1);
+        assertEquals(List.of(11L, 7L, 3L), ids(history.search("FOO", category)));
+        HistoryStorage.Query later = new HistoryStorage.Query(Long.MAX_VALUE, 10, null, null, now + 3_600_000, 0);
+        assertEquals(List.of(), ids(history.search("foo", later)));
+        assertEquals(List.of(), ids(history.search("bar foo baz", all)));
+        history.flush();
+        history.getStorage().close();
+
+        BuildHistory reloaded = new BuildHistory(file);
+        assertEquals(List.of(12L, 10L, 8L, 6L, 4L, 2L), ids(reloaded.search("other", all.withLimit(10))));
+        reloaded.record("b", "other-foo", "other-foo", 1, "Category");
+        assertEquals(List.of(13L, 12L), ids(reloaded.search("oth", all)));
+    }
+
+    @Test
+    void testRecordingDoesNotWaitForTheIndexToBeBuilt() throws Exception {
+        File file = new File(tmp, "history.xml");
+        BuildHistory history = new BuildHistory(file);
+        history.record("a", "folder/old", "old", 1, "Category A");
+        history.flush();
+        history.getStorage().close();
+
+        // the bulk load holds the index while it reads a page, until released
+        CountDownLatch indexing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        FileHistoryStorage storage = new FileHistoryStorage(new File(tmp, "onboarding-history")) {
+            @Override
+            public List<BuildHistory.BuildRecord> query(HistoryStorage.Query query) throws IOException {
+                List<BuildHistory.BuildRecord> page = super.query(query);
+                return new AbstractList<>() {
+                    @Override
+                    public BuildHistory.BuildRecord get(int i) {
+                        indexing.countDown();
+                        try {
+                            release.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        return page.get(i);
+                    }
+
+                    @Override
+                    public int size() {
+                        return page.size();
+                    }
+                };
+            }
+        };
+        BuildHistory lazy = new BuildHistory(file, storage, false);
+        lazy.awaitLoaded();
+        Thread bulk = new Thread(lazy::buildIndex);
+        bulk.start();
+        assertTrue(indexing.await(10, TimeUnit.SECONDS));
+
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            pool.submit(() -> lazy.record("a", "folder/new", "new", 1, "Category A")).get(10, TimeUnit.SECONDS);
+        } finally {
+            release.countDown();
+            pool.shutdownNow();
+        }
+        bulk.join();
+        assertTrue(lazy.isIndexed());
+        HistoryStorage.Query all = new HistoryStorage.Query(Long.MAX_VALUE, 10, null);
+        assertEquals(List.of(2L, 1L), ids(lazy.search("folder", all)));
+    }
+
+    @Test
+    void testSwitchingStorageCopiesTheHistoryOldestFirst() throws Exception {
+        File file = new File(tmp, "history.xml");
+        BuildHistory history = new BuildHistory(file);
+        for (int i = 1; i <= 25; i++) {
+            history.record("a", "job", "job", i, "Category A");
+        }
+        H2HistoryStorage h2 = new H2HistoryStorage(new File(tmp, "h2"));
+        try {
+            history.setStorage(h2).get();
+            assertEquals(h2, history.getStorage());
+            List<BuildHistory.BuildRecord> copied = h2.latest(0);
+            assertEquals(25, copied.size());
+            assertEquals(1, copied.get(0).getId());
+            assertEquals(25, copied.get(24).getId());
+        } finally {
+            h2.close();
+        }
+    }
+
+    @Test
+    void testSwitchingBackCopiesOnlyTheNewerRecords() throws Exception {
+        File file = new File(tmp, "history.xml");
+        BuildHistory history = new BuildHistory(file);
+        for (int i = 1; i <= 25; i++) {
+            history.record("a", "job", "job", i, "Category A");
+        }
+        H2HistoryStorage h2 = new H2HistoryStorage(new File(tmp, "h2"));
+        FileHistoryStorage log = new FileHistoryStorage(new File(tmp, "onboarding-history"));
+        try {
+            history.setStorage(h2).get();
+            for (int i = 26; i <= 35; i++) {
+                history.record("a", "job", "job", i, "Category A");
+            }
+            history.setStorage(log).get();
+            assertEquals(log, history.getStorage());
+            List<BuildHistory.BuildRecord> records = log.latest(0);
+            assertEquals(35, records.size());
+            for (int i = 0; i < records.size(); i++) {
+                assertEquals(i + 1, records.get(i).getId());
+            }
+
+            history.record("a", "job", "job", 36, "Category A");
+            history.flush();
+            assertEquals(36, log.maxId());
+            // the H2 database now lacks record 36, a storage behind the current one is caught up again
+            H2HistoryStorage behind = new H2HistoryStorage(new File(tmp, "h2"));
+            history.setStorage(behind).get();
+            assertEquals(36, behind.maxId());
+            behind.close();
+        } finally {
+            h2.close();
+            log.close();
+        }
+    }
+
+    @Test
+    void testEveryAppendIsTimed() throws Exception {
+        BuildHistory history = new BuildHistory(new File(tmp, "history.xml"));
+        long before = OnboardingMetrics.HISTORY_APPEND.count();
+        history.record("a", "job", "job", 1, "Category A");
+        history.addRecord("legacy", 2, "Category A");
+        assertEquals(before + 2, OnboardingMetrics.HISTORY_APPEND.count());
+        history.getStorage().close();
+    }
+
+    private static List<Long> ids(BuildHistory.Page page) {
+        List<Long> ids = new ArrayList<>();
+        for (BuildHistory.BuildRecord r : page.getRecords()) {
+            ids.add(r.getId());
+        }
+        return ids;
+    }
+
+    private static String record(long id, String job, String category) {
+        return "<record><id>" + id + "</id><jobFullName>" + job + "</jobFullName><jobName>" + job
+                + "</jobName><buildNumber>" + id + "</buildNumber><categoryUuid>" + category
+                + "</categoryUuid><categoryName>Category</categoryName><timestamp>" + id + "</timestamp></record>";
+    }
+}
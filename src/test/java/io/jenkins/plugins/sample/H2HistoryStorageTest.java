@@ -0,0 +1,56 @@
+package io.jenkins.plugins.sample;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class H2HistoryStorageTest {
+
+    @TempDir
+    File dir;
+
+    private static List<BuildHistory.BuildRecord> records(int from, int to) {
+        List<BuildHistory.BuildRecord> records = new ArrayList<>();
+        for (int i = from; i <= to; i++) {
+            String job = "job-" + i % 3;
+            records.add(new BuildHistory.BuildRecord(
+                    i, job, job, i, i % 2 == 0 ? "even" : "odd", "Category", i, "SUCCESS", i, 10));
+        }
+        return records;
+    }
+
+    private static List<Long> ids(List<BuildHistory.BuildRecord> records) {
+        return records.stream().map(BuildHistory.BuildRecord::getId).toList();
+    }
+
+    @Test
+    void testQueriesAndAggregatesSurviveReopening() throws Exception {
+        H2HistoryStorage storage = new H2HistoryStorage(dir);
+        storage.append(records(1, 100));
+        // appending records again, as a retried migration does, keeps one copy of each
+        storage.append(records(91, 100));
+        storage.close();
+
+        H2HistoryStorage reopened = new H2HistoryStorage(dir);
+        try {
+            assertEquals(100, reopened.maxId());
+            assertEquals(List.of(48L, 46L, 44L), ids(reopened.query(new HistoryStorage.Query(50, 3, "even"))));
+            assertEquals(
+                    List.of(48L, 42L),
+                    ids(reopened.query(new HistoryStorage.Query(Long.MAX_VALUE, 10, "even", "job-0", 40, 50))));
+            assertEquals(
+                    List.of(58L, 56L),
+                    ids(reopened.query(new HistoryStorage.Query(60, 10, "even").withIdRange(55, 60))));
+            assertEquals(Map.of("even", 5L, "odd", 5L), reopened.countByCategory(1, 11));
+            assertEquals(List.of(99L, 100L), ids(reopened.latest(2)));
+            assertEquals(100, reopened.latest(0).size());
+        } finally {
+            reopened.close();
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package io.jenkins.plugins.sample;
+
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+import hudson.model.Result;
+import jenkins.benchmark.jmh.JmhBenchmark;
+import jenkins.benchmark.jmh.JmhBenchmarkState;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+
+/**
+ * Loading all builds of a job with {@code builds} builds of {@link HelloWorldBuilder}, with the greeting persisted in
+ * each build.xml by default, or supplied by {@link HelloWorldBuilder.GreetingActionFactory} when
+ * {@link HelloWorldBuilder#TRANSIENT_ACTION} is enabled.
+ */
+@JmhBenchmark
+public class HelloWorldActionBenchmark {
+
+    public static class Job extends JmhBenchmarkState {
+
+        @Param({"10000"})
+        public int builds;
+
+        @Param({"true", "false"})
+        public boolean persisted;
+
+        FreeStyleProject project;
+
+        @Override
+        public void setup() throws Exception {
+            HelloWorldBuilder.TRANSIENT_ACTION = !persisted;
+            project = getJenkins().createProject(FreeStyleProject.class, "greetings");
+            project.getBuildersList().add(new HelloWorldBuilder("Jenkins"));
+            for (int i = 0; i < builds; i++) {
+                FreeStyleBuild build = new FreeStyleBuild(project);
+                if (persisted) {
+                    build.addAction(new HelloWorldAction("Jenkins"));
+                }
+                build.setResult(Result.SUCCESS);
+                build.save();
+            }
+        }
+    }
+
+    @Benchmark
+    public int loadBuilds(Job state) {
+        state.project._getRuns().purgeCache();
+        int greetings = 0;
+        for (FreeStyleBuild build : state.project.getBuilds()) {
+            if (build.getAction(HelloWorldAction.class) != null) {
+                greetings++;
+            }
+        }
+        return greetings;
+    }
+}
@@ -0,0 +1,33 @@
+package io.jenkins.plugins.sample;
+
+import hudson.util.FormValidation;
+import jenkins.benchmark.jmh.JmhBenchmark;
+import jenkins.benchmark.jmh.JmhBenchmarkState;
+import org.openjdk.jmh.annotations.Benchmark;
+
+/**
+ * Form validation of the name of {@link HelloWorldBuilder}, called on every keystroke in the job configuration.
+ */
+@JmhBenchmark
+public class HelloWorldBuilderBenchmark {
+
+    public static class Descriptor extends JmhBenchmarkState {
+
+        HelloWorldBuilder.DescriptorImpl descriptor;
+
+        @Override
+        public void setup() {
+            descriptor = getJenkins().getDescriptorByType(HelloWorldBuilder.DescriptorImpl.class);
+        }
+    }
+
+    @Benchmark
+    public FormValidation checkValidName(Descriptor state) throws Exception {
+        return state.descriptor.doCheckName("Jenkins Onboarding", false);
+    }
+
+    @Benchmark
+    public FormValidation checkFrenchName(Descriptor state) throws Exception {
+        return state.descriptor.doCheckName("François", false);
+    }
+}
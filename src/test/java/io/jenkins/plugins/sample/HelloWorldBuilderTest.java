@@ -1,8 +1,14 @@
 package io.jenkins.plugins.sample;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
 import hudson.model.FreeStyleBuild;
 import hudson.model.FreeStyleProject;
 import hudson.model.Label;
+import java.io.File;
+import java.nio.file.Files;
 import org.jenkinsci.plugins.workflow.cps.CpsFlowDefinition;
 import org.jenkinsci.plugins.workflow.job.WorkflowJob;
 import org.jenkinsci.plugins.workflow.job.WorkflowRun;
@@ -47,6 +53,31 @@ class HelloWorldBuilderTest {
         jenkins.assertLogContains("Hello, " + name, build);
     }
 
+    @Test
+    void testGreetingActionIsOnlyTransientWhenEnabled(JenkinsRule jenkins) throws Exception {
+        FreeStyleProject project = jenkins.createFreeStyleProject();
+        project.getBuildersList().add(new HelloWorldBuilder(name));
+
+        FreeStyleBuild persisted = jenkins.buildAndAssertSuccess(project);
+        String xml = Files.readString(new File(persisted.getRootDir(), "build.xml").toPath());
+        assertTrue(xml.contains("HelloWorldAction"), xml);
+
+        HelloWorldBuilder.TRANSIENT_ACTION = true;
+        try {
+            FreeStyleBuild build = jenkins.buildAndAssertSuccess(project);
+            assertEquals(name, build.getAction(HelloWorldAction.class).getName());
+            xml = Files.readString(new File(build.getRootDir(), "build.xml").toPath());
+            assertFalse(xml.contains("HelloWorldAction"), xml);
+            assertEquals(1, persisted.getActions(HelloWorldAction.class).size());
+            try (JenkinsRule.WebClient wc = jenkins.createWebClient()) {
+                String page = wc.getPage(build, "greeting").getWebResponse().getContentAsString();
+                assertTrue(page.contains("Name: " + name), page);
+            }
+        } finally {
+            HelloWorldBuilder.TRANSIENT_ACTION = false;
+        }
+    }
+
     @Test
     void testBuildFrench(JenkinsRule jenkins) throws Exception {
         FreeStyleProject project = jenkins.createFreeStyleProject();
@@ -68,5 +99,7 @@ class HelloWorldBuilderTest {
         WorkflowRun completedBuild = jenkins.assertBuildStatusSuccess(job.scheduleBuild2(0));
         String expectedString = "Hello, " + name + "!";
         jenkins.assertLogContains(expectedString, completedBuild);
+        // Pipeline jobs have no builder configuration to derive the greeting from
+        assertEquals(name, completedBuild.getAction(HelloWorldAction.class).getName());
     }
 }
@@ -0,0 +1,155 @@
+package io.jenkins.plugins.sample;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class HistoryLogTest {
+
+    @TempDir
+    File dir;
+
+    private static List<BuildHistory.BuildRecord> records(int from, int to) {
+        List<BuildHistory.BuildRecord> records = new ArrayList<>();
+        for (int i = from; i <= to; i++) {
+            records.add(new BuildHistory.BuildRecord(
+                    i, "job-" + i, "job-" + i, i, i % 2 == 0 ? "even" : "odd", "Category", i, "SUCCESS", i, 10));
+        }
+        return records;
+    }
+
+    private File[] segmentFiles() {
+        return dir.listFiles((d, name) -> name.endsWith(".log"));
+    }
+
+    @Test
+    void testAppendsAcrossSegmentsAreReadBackNewestFirst() throws Exception {
+        HistoryLog log = new HistoryLog(dir, 4096);
+        for (int i = 0; i < 10; i++) {
+            log.append(records(i * 100 + 1, i * 100 + 100));
+        }
+        assertTrue(segmentFiles().length > 1);
+        assertEquals(1000, log.maxId());
+
+        HistoryLog reopened = new HistoryLog(dir, 4096);
+        List<BuildHistory.BuildRecord> page = reopened.read(new HistoryStorage.Query(500, 3, "even"));
+        assertEquals(List.of(498L, 496L, 494L), page.stream().map(BuildHistory.BuildRecord::getId).toList());
+        BuildHistory.BuildRecord r = page.get(0);
+        assertEquals("job-498", r.getJobFullName());
+        assertEquals("SUCCESS", r.getResult());
+        assertEquals(10, r.getDuration());
+        page = reopened.read(new HistoryStorage.Query(500, 10, "even").withIdRange(250, 260));
+        assertEquals(List.of(258L, 256L, 254L, 252L), page.stream().map(BuildHistory.BuildRecord::getId).toList());
+
+        List<BuildHistory.BuildRecord> all = reopened.readLatest(0);
+        assertEquals(1000, all.size());
+        assertEquals(1, all.get(0).getId());
+        assertEquals(1000, all.get(999).getId());
+    }
+
+    @Test
+    void testNullFieldsRoundTrip() throws Exception {
+        HistoryLog log = new HistoryLog(dir);
+        log.append(List.of(new BuildHistory.BuildRecord(1, null, "legacy", 7, null, "Category", 42)));
+        BuildHistory.BuildRecord r = new HistoryLog(dir).readLatest(0).get(0);
+        assertNull(r.getJobFullName());
+        assertNull(r.getCategoryUuid());
+        assertNull(r.getResult());
+        assertEquals("legacy", r.getJobName());
+        assertEquals(42, r.getTimestamp());
+    }
+
+    @Test
+    void testTornAppendIsTruncated() throws Exception {
+        HistoryLog log = new HistoryLog(dir);
+        log.append(records(1, 20));
+        log.close();
+        File segment = segmentFiles()[0];
+        long complete = segment.length();
+        try (RandomAccessFile raf = new RandomAccessFile(segment, "rw")) {
+            // a frame that claims more bytes than were written, as after a crash mid-append
+            raf.seek(complete);
+            raf.writeInt(100);
+            raf.writeInt(0);
+            raf.write(new byte[10]);
+        }
+
+        HistoryLog reopened = new HistoryLog(dir);
+        assertEquals(complete, segment.length());
+        assertEquals(20, reopened.readLatest(0).size());
+        reopened.append(records(21, 21));
+        assertEquals(21, new HistoryLog(dir).readLatest(0).size());
+    }
+
+    @Test
+    void testCorruptRecordEndsTheSegment() throws Exception {
+        HistoryLog log = new HistoryLog(dir);
+        log.append(records(1, 10));
+        log.close();
+        File segment = segmentFiles()[0];
+        try (RandomAccessFile raf = new RandomAccessFile(segment, "rw")) {
+            raf.seek(segment.length() - 1);
+            raf.write(0xff);
+        }
+        assertEquals(9, new HistoryLog(dir).readLatest(0).size());
+    }
+
+    @Test
+    void testSealedSegmentsAreOpenedFromTheirIndex() throws Exception {
+        HistoryLog log = new HistoryLog(dir, 4096);
+        for (int i = 0; i < 10; i++) {
+            log.append(records(i * 100 + 1, i * 100 + 100));
+        }
+        log.close();
+        assertTrue(segmentFiles().length > 1);
+        File oldest = new File(dir, "history-1.log");
+        long size = oldest.length();
+        try (RandomAccessFile raf = new RandomAccessFile(oldest, "r")) {
+            raf.seek(size - 4);
+            assertEquals(0x4F424849, raf.readInt());
+        }
+
+        HistoryLog reopened = new HistoryLog(dir, 4096);
+        assertEquals(1000, reopened.maxId());
+        assertEquals(1000, reopened.readLatest(0).size());
+        assertEquals(size, oldest.length());
+        reopened.append(records(1001, 1001));
+        assertEquals(1001, new HistoryLog(dir, 4096).readLatest(0).size());
+    }
+
+    @Test
+    void testDamagedSealedSegmentIsAnError() throws Exception {
+        HistoryLog log = new HistoryLog(dir, 4096);
+        for (int i = 0; i < 10; i++) {
+            log.append(records(i * 100 + 1, i * 100 + 100));
+        }
+        log.close();
+        File oldest = new File(dir, "history-1.log");
+        // a byte of the first record, which is only checked when its block is read
+        flipByte(oldest, 40);
+        HistoryLog reopened = new HistoryLog(dir, 4096);
+        assertThrows(IOException.class, () -> reopened.readLatest(0));
+
+        // a byte of the index in the footer
+        flipByte(oldest, oldest.length() - 30);
+        assertThrows(IOException.class, () -> new HistoryLog(dir, 4096));
+    }
+
+    private static void flipByte(File file, long position) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(position);
+            int b = raf.read();
+            raf.seek(position);
+            raf.write(b ^ 0xff);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package io.jenkins.plugins.sample;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import jenkins.benchmark.jmh.JmhBenchmark;
+import jenkins.benchmark.jmh.JmhBenchmarkState;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+
+/**
+ * Resolving category UUIDs as {@link OnboardingTask#perform} does, and submitting the global configuration with
+ * {@code categories} categories.
+ */
+@JmhBenchmark
+public class OnboardingConfigBenchmark {
+
+    public static class Categories extends JmhBenchmarkState {
+
+        @Param({"10", "1000", "10000"})
+        public int categories;
+
+        OnboardingPluginConfig config;
+
+        String[] uuids;
+
+        JSONObject form;
+
+        int next;
+
+        @Override
+        public void setup() throws Exception {
+            config = OnboardingPluginConfig.get();
+            List<OnboardingPluginConfig.Category> list = new ArrayList<>();
+            JSONArray array = new JSONArray();
+            uuids = new String[categories];
+            for (int i = 0; i < categories; i++) {
+                uuids[i] = UUID.randomUUID().toString();
+                list.add(new OnboardingPluginConfig.Category("Category " + i, uuids[i]));
+                JSONObject item = new JSONObject();
+                item.put("categoryName", "Category " + i);
+                item.put("uuid", uuids[i]);
+                array.add(item);
+            }
+            config.setCategories(list);
+            form = new JSONObject();
+            form.put("name", "Benchmark");
+            form.put("description", "Configuration with " + categories + " categories");
+            form.put("categories", array);
+        }
+    }
+
+    @Benchmark
+    public String resolveCategory(Categories state) {
+        return state.config.getCategoryName(state.uuids[state.next++ % state.uuids.length]);
+    }
+
+    @Benchmark
+    public boolean configure(Categories state) throws Exception {
+        return state.config.configure(null, state.form);
+    }
+}
@@ -0,0 +1,222 @@
+package io.jenkins.plugins.sample;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.sun.net.httpserver.HttpServer;
+import hudson.XmlFile;
+import hudson.model.Saveable;
+import hudson.model.listeners.SaveableListener;
+import hudson.util.FormValidation;
+import hudson.util.Secret;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import net.sf.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.TestExtension;
+import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
+
+@WithJenkins
+class OnboardingPluginConfigTest {
+
+    private HttpServer server;
+    private final List<String> received = new ArrayList<>();
+
+    @BeforeEach
+    void startServer() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            synchronized (received) {
+                received.add(exchange.getRequestMethod() + " "
+                        + exchange.getRequestHeaders().getFirst("Authorization") + " " + body);
+            }
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        server.createContext("/slow", exchange -> {
+            try {
+                Thread.sleep(3000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    private String url(String path) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+    }
+
+    @Test
+    void testConnectionAndPayloadAgainstStub(JenkinsRule jenkins) {
+        OnboardingPluginConfig.DescriptorImpl descriptor =
+                jenkins.jenkins.getDescriptorByType(OnboardingPluginConfig.DescriptorImpl.class);
+        Secret password = Secret.fromString("secret");
+        String auth = "Basic " + Base64.getEncoder().encodeToString("bob:secret".getBytes(StandardCharsets.UTF_8));
+
+        FormValidation connection = descriptor.doTestConnection("bob", password, url("/"));
+        assertEquals(FormValidation.Kind.OK, connection.kind);
+        FormValidation payload = descriptor.doTestPayload("bob", password, Secret.fromString("hello"), url("/"));
+        assertEquals(FormValidation.Kind.OK, payload.kind);
+
+        assertEquals(List.of("GET " + auth + " ", "POST " + auth + " hello"), received);
+    }
+
+    @Test
+    void testReadTimeout(JenkinsRule jenkins) {
+        OnboardingPluginConfig.get().setReadTimeoutSeconds(1);
+        OnboardingPluginConfig.DescriptorImpl descriptor =
+                jenkins.jenkins.getDescriptorByType(OnboardingPluginConfig.DescriptorImpl.class);
+
+        FormValidation connection = descriptor.doTestConnection("bob", Secret.fromString("secret"), url("/slow"));
+        assertEquals(FormValidation.Kind.ERROR, connection.kind);
+    }
+
+    @Test
+    void testCategoryImportAppliesDiffByUuid(JenkinsRule jenkins) throws Exception {
+        OnboardingPluginConfig config = OnboardingPluginConfig.get();
+        config.setCategories(List.of(
+                new OnboardingPluginConfig.Category("Alpha", "a"),
+                new OnboardingPluginConfig.Category("Beta", "b"),
+                new OnboardingPluginConfig.Category("Gamma", "g")));
+
+        String ndjson = "{\"uuid\":\"a\",\"categoryName\":\"Alpha\"}\n"
+                + "{\"uuid\":\"b\",\"categoryName\":\"Beta Team\"}\n"
+                + "\n"
+                + "{\"uuid\":\"g\",\"remove\":true}\n"
+                + "{\"uuid\":\"d\",\"categoryName\":\"Delta\"}\n";
+        JSONObject result = CategoryImport.apply(
+                config, new StringReader(ndjson), CategoryImport.Format.NDJSON, false);
+        assertEquals(1, result.getInt("added"));
+        assertEquals(1, result.getInt("renamed"));
+        assertEquals(1, result.getInt("removed"));
+        assertEquals(1, result.getInt("unchanged"));
+        assertEquals("Beta Team", config.getCategoryName("b"));
+        assertEquals(List.of("a", "b", "d"), uuids(config));
+
+        String csv = "uuid,categoryName\nd,\"Delta, Inc.\"\n,Epsilon\n";
+        result = CategoryImport.apply(config, new StringReader(csv), CategoryImport.Format.CSV, true);
+        assertEquals(1, result.getInt("added"));
+        assertEquals(1, result.getInt("renamed"));
+        assertEquals(2, result.getInt("removed"));
+        assertEquals("Delta, Inc.", config.getCategoryName("d"));
+        assertEquals(2, config.getCategories().size());
+
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> CategoryImport.apply(
+                        config, new StringReader("{\"uuid\":\"x\"}"), CategoryImport.Format.NDJSON, false));
+        assertEquals(2, config.getCategories().size());
+    }
+
+    @Test
+    void testCsvHeaderIsRecognizedAfterByteOrderMarkAndBlankLines(JenkinsRule jenkins) throws Exception {
+        OnboardingPluginConfig config = OnboardingPluginConfig.get();
+        config.setCategories(List.of(new OnboardingPluginConfig.Category("Alpha", "a")));
+
+        String csv = "\uFEFF\n  \n\"uuid\",categoryName\nb,Beta\n";
+        JSONObject result = CategoryImport.apply(config, new StringReader(csv), CategoryImport.Format.CSV, false);
+        assertEquals(1, result.getInt("added"));
+        assertEquals(List.of("a", "b"), uuids(config));
+
+        result = CategoryImport.apply(
+                config, new StringReader("\uFEFFuuid,categoryName\nc,Gamma\n"), CategoryImport.Format.CSV, false);
+        assertEquals(1, result.getInt("added"));
+        assertEquals(List.of("a", "b", "c"), uuids(config));
+    }
+
+    private static List<String> uuids(OnboardingPluginConfig config) {
+        return config.getCategories().stream()
+                .map(OnboardingPluginConfig.Category::getUuid)
+                .toList();
+    }
+
+    @Test
+    void testHistoryExportStreamsAllPages(JenkinsRule jenkins) throws Exception {
+        BuildHistory history = BuildHistory.get();
+        int records = HistoryExport.PAGE_SIZE + 10;
+        for (int i = 1; i <= records; i++) {
+            history.record(i % 2 == 0 ? "even" : "odd", "job", "job, \"quoted\"", i, "Category", "SUCCESS", i, 1);
+        }
+
+        StringWriter ndjson = new StringWriter();
+        HistoryStorage.Query all = new HistoryStorage.Query(Long.MAX_VALUE, HistoryExport.PAGE_SIZE, null);
+        assertEquals(records, HistoryExport.write(history, all, CategoryImport.Format.NDJSON, ndjson));
+        String[] lines = ndjson.toString().split("\n");
+        assertEquals(records, lines.length);
+        assertEquals(records, JSONObject.fromObject(lines[0]).getInt("buildNumber"));
+
+        StringWriter csv = new StringWriter();
+        HistoryStorage.Query even = new HistoryStorage.Query(Long.MAX_VALUE, HistoryExport.PAGE_SIZE, "even");
+        assertEquals(records / 2, HistoryExport.write(history, even, CategoryImport.Format.CSV, csv));
+        lines = csv.toString().split("\n");
+        assertEquals(records / 2 + 1, lines.length);
+        assertEquals(
+                List.of("job", "job, \"quoted\"", String.valueOf(records), "even"),
+                CategoryImport.parseCsv(lines[1], 2).subList(1, 5));
+    }
+
+    @Test
+    void testChangesAreWrittenOnce(JenkinsRule jenkins) throws Exception {
+        OnboardingPluginConfig config = OnboardingPluginConfig.get();
+        OnboardingPluginConfig.flushPendingSave();
+        SaveCounter.SAVES.set(0);
+
+        config.update(c -> {
+            c.setName("Alice");
+            c.setDescription("first");
+            c.setUserName("alice");
+            c.setEndpointUrl(url("/alice"));
+        });
+        assertEquals(1, SaveCounter.SAVES.get());
+        OnboardingPluginConfig.flushPendingSave();
+        assertEquals(1, SaveCounter.SAVES.get());
+
+        // setters outside of update() are coalesced into one deferred write
+        config.setName("Bob");
+        config.setDescription("second");
+        config.setUserName("bob");
+        OnboardingPluginConfig.flushPendingSave();
+        assertEquals(2, SaveCounter.SAVES.get());
+
+        String xml = SaveCounter.file.asString();
+        assertTrue(xml.contains("<name>Bob</name>"), xml);
+        assertTrue(xml.contains("<description>second</description>"), xml);
+        assertTrue(xml.contains("<userName>bob</userName>"), xml);
+        assertTrue(xml.contains("<endpointUrl>" + url("/alice") + "</endpointUrl>"), xml);
+    }
+
+    @TestExtension("testChangesAreWrittenOnce")
+    public static final class SaveCounter extends SaveableListener {
+
+        static final AtomicInteger SAVES = new AtomicInteger();
+
+        static volatile XmlFile file;
+
+        @Override
+        public void onChange(Saveable o, XmlFile file) {
+            if (o instanceof OnboardingPluginConfig) {
+                SaveCounter.file = file;
+                SAVES.incrementAndGet();
+            }
+        }
+    }
+}
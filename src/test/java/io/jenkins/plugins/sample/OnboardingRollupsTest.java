@@ -0,0 +1,106 @@
+package io.jenkins.plugins.sample;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class OnboardingRollupsTest {
+
+    private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+
+    @TempDir
+    File tmp;
+
+    @Test
+    void testBucketsAreCountedAndReusedAsTimeMovesOn() throws Exception {
+        File file = new File(tmp, "rollups.bin");
+        OnboardingRollups rollups = new OnboardingRollups(file);
+        long now = 1000 * DAY + 30 * MINUTE;
+        rollups.record("a", now - 2 * MINUTE);
+        rollups.record("a", now - 2 * MINUTE + 1);
+        rollups.record("a", now);
+        rollups.record("b", now - 2 * DAY);
+        rollups.record(null, now);
+
+        Map<String, int[]> minutes = rollups.trends(OnboardingRollups.Resolution.MINUTE, now, 3);
+        assertArrayEquals(new int[] {2, 0, 1}, minutes.get("a"));
+        assertArrayEquals(new int[] {0, 0, 0}, minutes.get("b"));
+        assertArrayEquals(new int[] {0, 0, 3}, rollups.trends(OnboardingRollups.Resolution.HOUR, now, 3).get("a"));
+        assertArrayEquals(new int[] {1, 0, 0}, rollups.trends(OnboardingRollups.Resolution.DAY, now, 3).get("b"));
+
+        // an hour later the minute slots of "a" are reused, the hour and day ones are not
+        long later = now + HOUR;
+        rollups.record("a", later);
+        assertArrayEquals(new int[] {0, 0, 1}, rollups.trends(OnboardingRollups.Resolution.MINUTE, later, 3).get("a"));
+        assertArrayEquals(new int[] {3, 1}, rollups.trends(OnboardingRollups.Resolution.HOUR, later, 2).get("a"));
+        // a build recorded late for a bucket that has left the ring is dropped
+        rollups.record("a", now);
+        assertArrayEquals(new int[] {0, 0, 1}, rollups.trends(OnboardingRollups.Resolution.MINUTE, later, 3).get("a"));
+
+        rollups.save();
+        OnboardingRollups reloaded = new OnboardingRollups(file);
+        assertTrue(reloaded.load());
+        assertArrayEquals(new int[] {4, 1}, reloaded.trends(OnboardingRollups.Resolution.HOUR, later, 2).get("a"));
+        assertArrayEquals(new int[] {1, 0, 0}, reloaded.trends(OnboardingRollups.Resolution.DAY, now, 3).get("b"));
+        assertFalse(new OnboardingRollups(new File(tmp, "missing.bin")).load());
+    }
+
+    @Test
+    void testFileIsOnlyWrittenAfterChanges() throws Exception {
+        File file = new File(tmp, "rollups.bin");
+        OnboardingRollups rollups = new OnboardingRollups(file);
+        rollups.record("a", DAY);
+        rollups.save();
+        assertTrue(file.delete());
+        rollups.save();
+        assertFalse(file.exists());
+        rollups.record("a", DAY);
+        rollups.save();
+        assertTrue(file.exists());
+
+        // a file of the previous format is rebuilt from the history
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file))) {
+            out.writeInt(0x4F42524F);
+            out.writeInt(1);
+            out.writeInt(0);
+        }
+        assertFalse(new OnboardingRollups(file).load());
+    }
+
+    @Test
+    void testRollupsAreRebuiltFromTheHistoryWhenMissing() throws Exception {
+        File file = new File(tmp, "history.xml");
+        BuildHistory history = new BuildHistory(file);
+        for (int i = 1; i <= 5; i++) {
+            history.record(i % 2 == 0 ? "a" : "b", "job", "job", i, "Category");
+        }
+        history.flush();
+        history.getStorage().close();
+        long now = System.currentTimeMillis();
+        Map<String, int[]> saved = history.getRollups().trends(OnboardingRollups.Resolution.DAY, now, 1);
+        assertArrayEquals(new int[] {2}, saved.get("a"));
+        assertArrayEquals(new int[] {3}, saved.get("b"));
+
+        assertTrue(new File(tmp, "onboarding-rollups.bin").delete());
+        BuildHistory rebuilt = new BuildHistory(file);
+        assertArrayEquals(
+                new int[] {2}, rebuilt.getRollups().trends(OnboardingRollups.Resolution.DAY, now, 1).get("a"));
+        rebuilt.getStorage().close();
+
+        BuildHistory reloaded = new BuildHistory(file);
+        assertArrayEquals(
+                new int[] {3}, reloaded.getRollups().trends(OnboardingRollups.Resolution.DAY, now, 1).get("b"));
+    }
+}
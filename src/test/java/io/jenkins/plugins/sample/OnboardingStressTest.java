@@ -0,0 +1,192 @@
+package io.jenkins.plugins.sample;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import hudson.Launcher;
+import hudson.XmlFile;
+import hudson.model.AbstractBuild;
+import hudson.model.BuildListener;
+import hudson.model.Cause;
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+import hudson.model.ParametersAction;
+import hudson.model.ParametersDefinitionProperty;
+import hudson.model.Result;
+import hudson.model.StringParameterDefinition;
+import hudson.model.StringParameterValue;
+import hudson.tasks.Builder;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import jenkins.util.SystemProperties;
+import org.junit.jupiter.api.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.TestBuilder;
+import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
+
+/**
+ * Runs many concurrent builds with the plugin's steps while the global configuration keeps being saved, then checks
+ * that every build made it into the history and that the history and configuration files are intact. Prints the
+ * throughput and step latencies; the load is set with {@code -Donboarding.stress.builds=...}.
+ */
+@WithJenkins
+class OnboardingStressTest {
+
+    private static final int BUILDS = SystemProperties.getInteger("onboarding.stress.builds", 200);
+
+    private static final int JOBS = 10;
+
+    private static final int EXECUTORS = 16;
+
+    private static final int AGENTS = SystemProperties.getInteger("onboarding.stress.agents", 2);
+
+    private static final int CATEGORIES = 5;
+
+    private static final Queue<Long> ONBOARDING_NANOS = new ConcurrentLinkedQueue<>();
+
+    private static final Queue<Long> HELLO_NANOS = new ConcurrentLinkedQueue<>();
+
+    @Test
+    void testConcurrentBuildsAreAllRecorded(JenkinsRule jenkins) throws Exception {
+        jenkins.jenkins.setNumExecutors(EXECUTORS);
+        for (int i = 0; i < AGENTS; i++) {
+            jenkins.createOnlineSlave();
+        }
+        List<OnboardingPluginConfig.Category> categories = new ArrayList<>();
+        for (int i = 0; i < CATEGORIES; i++) {
+            categories.add(new OnboardingPluginConfig.Category("Stress " + i, "stress-" + i));
+        }
+        OnboardingPluginConfig config = OnboardingPluginConfig.get();
+        config.setCategories(categories);
+
+        List<FreeStyleProject> projects = new ArrayList<>();
+        for (int i = 0; i < JOBS; i++) {
+            FreeStyleProject project = jenkins.createFreeStyleProject("stress-" + i);
+            project.setConcurrentBuild(true);
+            project.addProperty(new ParametersDefinitionProperty(new StringParameterDefinition("N", "")));
+            OnboardingTask onboarding = new OnboardingTask("stress-" + i % CATEGORIES);
+            project.getBuildersList().add(new Timed(onboarding, ONBOARDING_NANOS));
+            project.getBuildersList().add(new Timed(new HelloWorldBuilder("Stress"), HELLO_NANOS));
+            projects.add(project);
+        }
+
+        AtomicBoolean building = new AtomicBoolean(true);
+        AtomicInteger saves = new AtomicInteger();
+        Thread configWriter = new Thread(() -> {
+            while (building.get()) {
+                config.setDescription("round " + saves.incrementAndGet());
+                config.setConnectTimeoutSeconds(1 + saves.get() % 10);
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        });
+        configWriter.start();
+
+        long start = System.nanoTime();
+        List<Future<FreeStyleBuild>> futures = new ArrayList<>();
+        for (int i = 0; i < BUILDS; i++) {
+            futures.add(projects.get(i % JOBS)
+                    .scheduleBuild2(
+                            0,
+                            new Cause.UserIdCause(),
+                            new ParametersAction(new StringParameterValue("N", String.valueOf(i)))));
+        }
+        Set<String> expected = new HashSet<>();
+        for (Future<FreeStyleBuild> future : futures) {
+            FreeStyleBuild build = future.get(5, TimeUnit.MINUTES);
+            jenkins.assertBuildStatus(Result.SUCCESS, build);
+            expected.add(build.getParent().getFullName() + "#" + build.getNumber());
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        building.set(false);
+        configWriter.join();
+        assertEquals(BUILDS, expected.size());
+
+        BuildHistory history = BuildHistory.get();
+        history.flush();
+        Set<String> recorded = new HashSet<>();
+        Set<Long> ids = new HashSet<>();
+        Map<String, Long> perCategory = new HashMap<>();
+        // a second reader validates the checksums of everything that was written
+        FileHistoryStorage reopened =
+                new FileHistoryStorage(new File(jenkins.jenkins.getRootDir(), "onboarding-history"));
+        try {
+            for (BuildHistory.BuildRecord r : reopened.latest(0)) {
+                assertTrue(ids.add(r.getId()), "duplicate record id " + r.getId());
+                if (r.getCategoryUuid() != null && r.getCategoryUuid().startsWith("stress-")) {
+                    assertTrue(recorded.add(r.getJobFullName() + "#" + r.getBuildNumber()), "duplicate record");
+                    assertEquals("SUCCESS", r.getResult());
+                    perCategory.merge(r.getCategoryUuid(), 1L, Long::sum);
+                }
+            }
+        } finally {
+            reopened.close();
+        }
+        assertEquals(expected, recorded);
+        new XmlFile(new File(jenkins.jenkins.getRootDir(), BuildHistory.class.getName() + ".xml")).read();
+        perCategory.forEach((uuid, count) -> assertEquals(
+                count.longValue(), history.getCategoryStats(uuid).getCount()));
+
+        OnboardingPluginConfig.flushPendingSave();
+        File configFile = new File(jenkins.jenkins.getRootDir(), OnboardingPluginConfig.class.getName() + ".xml");
+        String saved = new XmlFile(configFile).asString();
+        assertTrue(saved.contains("<description>round " + saves.get() + "</description>"), saved);
+
+        System.out.printf(
+                "%d builds in %.1f s: %.1f builds/s, %d config saves requested%n",
+                BUILDS, seconds, BUILDS / seconds, saves.get());
+        report("onboard step", ONBOARDING_NANOS);
+        report("greet step", HELLO_NANOS);
+    }
+
+    private static void report(String step, Queue<Long> nanos) {
+        long[] sorted = nanos.stream().mapToLong(Long::longValue).sorted().toArray();
+        assertEquals(BUILDS, sorted.length);
+        System.out.printf(
+                "%s latency: p50 %.3f ms, p99 %.3f ms, max %.3f ms%n",
+                step, percentile(sorted, 0.50) / 1e6, percentile(sorted, 0.99) / 1e6, sorted[sorted.length - 1] / 1e6);
+    }
+
+    private static long percentile(long[] sorted, double q) {
+        return sorted[Math.max(0, (int) Math.ceil(q * sorted.length) - 1)];
+    }
+
+    /**
+     * Runs a build step and records how long it took.
+     */
+    private static final class Timed extends TestBuilder {
+
+        private final Builder step;
+
+        private final transient Queue<Long> nanos;
+
+        Timed(Builder step, Queue<Long> nanos) {
+            this.step = step;
+            this.nanos = nanos;
+        }
+
+        @Override
+        public boolean perform(AbstractBuild<?, ?> build, Launcher launcher, BuildListener listener)
+                throws InterruptedException, IOException {
+            long start = System.nanoTime();
+            boolean result = step.perform(build, launcher, listener);
+            nanos.add(System.nanoTime() - start);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,326 @@
+package io.jenkins.plugins.sample;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.sun.net.httpserver.HttpServer;
+import hudson.Launcher;
+import hudson.model.AbstractBuild;
+import hudson.model.BuildListener;
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+import hudson.model.Queue;
+import hudson.model.queue.QueueListener;
+import hudson.model.queue.QueueTaskFuture;
+import hudson.slaves.DumbSlave;
+import hudson.util.ListBoxModel;
+import hudson.util.OneShotEvent;
+import hudson.util.Secret;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Base64;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.zip.GZIPInputStream;
+import org.jenkinsci.plugins.workflow.cps.CpsFlowDefinition;
+import org.jenkinsci.plugins.workflow.job.WorkflowJob;
+import org.jenkinsci.plugins.workflow.job.WorkflowRun;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.TestBuilder;
+import org.jvnet.hudson.test.TestExtension;
+import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
+
+@WithJenkins
+class OnboardingTaskTest {
+
+    final String uuid = "3f1b6c1e-6a2b-4d8e-9f00-000000000001";
+
+    @BeforeEach
+    void setUp(JenkinsRule jenkins) {
+        OnboardingPluginConfig.get().setCategories(List.of(new OnboardingPluginConfig.Category("Team A", uuid)));
+    }
+
+    @Test
+    void testConfigRoundtrip(JenkinsRule jenkins) throws Exception {
+        FreeStyleProject project = jenkins.createFreeStyleProject();
+        project.getBuildersList().add(new OnboardingTask(uuid));
+        project = jenkins.configRoundtrip(project);
+        jenkins.assertEqualDataBoundBeans(new OnboardingTask(uuid), project.getBuildersList().get(0));
+    }
+
+    @Test
+    void testBuild(JenkinsRule jenkins) throws Exception {
+        FreeStyleProject project = jenkins.createFreeStyleProject("freestyle");
+        project.getBuildersList().add(new OnboardingTask(uuid));
+
+        FreeStyleBuild build = jenkins.buildAndAssertSuccess(project);
+        jenkins.assertLogContains("Selected Category: Team A", build);
+        assertEquals("freestyle", BuildHistory.get().getLatestJobForCategory(uuid));
+
+        BuildHistory.BuildRecord record = BuildHistory.get().getRecords().get(0);
+        assertEquals("SUCCESS", record.getResult());
+        assertEquals(build.getStartTimeInMillis(), record.getStartTime());
+    }
+
+    @Test
+    void testHistoryIsFlushedOnShutdown(JenkinsRule jenkins) throws Exception {
+        FreeStyleProject project = jenkins.createFreeStyleProject("freestyle");
+        project.getBuildersList().add(new OnboardingTask(uuid));
+        jenkins.buildAndAssertSuccess(project);
+
+        BuildHistory.flushOnShutdown();
+        File root = jenkins.jenkins.getRootDir();
+        BuildHistory reloaded = new BuildHistory(
+                new File(root, BuildHistory.class.getName() + ".xml"),
+                new FileHistoryStorage(new File(root, "onboarding-history")));
+        assertEquals(1, reloaded.getRecords().size());
+        assertEquals("freestyle", reloaded.getLatestJobForCategory(uuid));
+        reloaded.getStorage().close();
+    }
+
+    @Test
+    void testSelectionIsNotPersistedWithTheBuild(JenkinsRule jenkins) throws Exception {
+        FreeStyleProject project = jenkins.createFreeStyleProject("freestyle");
+        project.getBuildersList().add(new OnboardingTask(uuid));
+
+        FreeStyleBuild build = jenkins.buildAndAssertSuccess(project);
+        assertEquals("freestyle", BuildHistory.get().getLatestJobForCategory(uuid));
+        String xml = Files.readString(new File(build.getRootDir(), "build.xml").toPath());
+        assertFalse(xml.contains("io.jenkins.plugins.sample"), xml);
+    }
+
+    @Test
+    void testPayloadFileIsStreamedFromTheAgent(JenkinsRule jenkins) throws Exception {
+        List<String> transferEncodings = new CopyOnWriteArrayList<>();
+        List<String> authorizations = new CopyOnWriteArrayList<>();
+        List<byte[]> bodies = new CopyOnWriteArrayList<>();
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            InputStream body = exchange.getRequestBody();
+            if ("gzip".equals(exchange.getRequestHeaders().getFirst("Content-Encoding"))) {
+                body = new GZIPInputStream(body);
+            }
+            bodies.add(body.readAllBytes());
+            transferEncodings.add(exchange.getRequestHeaders().getFirst("Transfer-Encoding"));
+            authorizations.add(exchange.getRequestHeaders().getFirst("Authorization"));
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        server.start();
+        try {
+            OnboardingPluginConfig config = OnboardingPluginConfig.get();
+            config.setConnectionConfig(true);
+            config.setEndpointUrl("http://127.0.0.1:" + server.getAddress().getPort() + "/");
+            config.setUserName("bob");
+            config.setPassword(Secret.fromString("secret"));
+
+            DumbSlave agent = jenkins.createOnlineSlave();
+            FreeStyleProject project = jenkins.createFreeStyleProject("payload");
+            project.setAssignedNode(agent);
+            OnboardingTask task = new OnboardingTask(uuid);
+            task.setPayloadFile("payload.bin");
+            project.getBuildersList().add(task);
+            byte[] payload = new byte[5 * 1024 * 1024];
+            new Random(42).nextBytes(payload);
+            agent.getWorkspaceFor(project).child("payload.bin").copyFrom(new ByteArrayInputStream(payload));
+
+            jenkins.assertLogContains("Payload file sent successfully", jenkins.buildAndAssertSuccess(project));
+            task.setGzipPayload(true);
+            jenkins.buildAndAssertSuccess(project);
+
+            assertEquals(List.of("chunked", "chunked"), transferEncodings);
+            assertArrayEquals(payload, bodies.get(0));
+            assertArrayEquals(payload, bodies.get(1));
+            String expected =
+                    "Basic " + Base64.getEncoder().encodeToString("bob:secret".getBytes(StandardCharsets.UTF_8));
+            assertEquals(List.of(expected, expected), authorizations);
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    void testPipelineStep(JenkinsRule jenkins) throws Exception {
+        WorkflowJob job = jenkins.createProject(WorkflowJob.class, "pipeline");
+        job.setDefinition(new CpsFlowDefinition("node { onboard categoryUuid: '" + uuid + "' }", true));
+        WorkflowRun run = jenkins.assertBuildStatusSuccess(job.scheduleBuild2(0));
+        jenkins.assertLogContains("Selected Category: Team A", run);
+        awaitLatestJob("pipeline");
+        assertEquals("SUCCESS", BuildHistory.get().getRecords().get(0).getResult());
+    }
+
+    @Test
+    void testMetrics(JenkinsRule jenkins) throws Exception {
+        long performed = OnboardingMetrics.TASK_PERFORM.count();
+        FreeStyleProject project = jenkins.createFreeStyleProject();
+        project.getBuildersList().add(new OnboardingTask(uuid));
+        jenkins.buildAndAssertSuccess(project);
+        assertEquals(performed + 1, OnboardingMetrics.TASK_PERFORM.count());
+
+        String metrics = jenkins.createWebClient()
+                .goTo("onboarding-metrics/", "text/plain")
+                .getWebResponse()
+                .getContentAsString();
+        assertTrue(metrics.contains("# TYPE onboarding_history_append_seconds histogram"), metrics);
+        assertTrue(metrics.contains("onboarding_task_perform_seconds_bucket{le=\"+Inf\"} "), metrics);
+        String categoryBuilds = "onboarding_category_builds_total{category_uuid=\"" + uuid + "\",category=\"Team A\"} ";
+        assertTrue(metrics.contains(categoryBuilds), metrics);
+    }
+
+    @Test
+    void testCategoryItemsAreCachedUntilCategoriesChange(JenkinsRule jenkins) {
+        OnboardingTask.DescriptorImpl descriptor =
+                jenkins.jenkins.getDescriptorByType(OnboardingTask.DescriptorImpl.class);
+        ListBoxModel items = descriptor.doFillCategoryUuidItems(null);
+        assertEquals(uuid, items.get(0).value);
+        // changes by one caller are not seen by the next
+        items.get(0).selected = true;
+        items.add("Injected", "injected");
+        ListBoxModel again = descriptor.doFillCategoryUuidItems(null);
+        assertNotSame(items, again);
+        assertEquals(1, again.size());
+        assertFalse(again.get(0).selected);
+
+        OnboardingPluginConfig.get()
+                .setCategories(List.of(
+                        new OnboardingPluginConfig.Category("Team A", uuid),
+                        new OnboardingPluginConfig.Category("Team B", null)));
+        ListBoxModel updated = descriptor.doFillCategoryUuidItems(null);
+        assertNotSame(items, updated);
+        assertEquals(2, updated.size());
+    }
+
+    @Test
+    void testSearchIndexPrefersWordPrefixes(JenkinsRule jenkins) {
+        CategorySearchIndex index = new CategorySearchIndex(List.of(
+                new OnboardingPluginConfig.Category("Desktop", null),
+                new OnboardingPluginConfig.Category("Cloud Ops", null),
+                new OnboardingPluginConfig.Category("Ops Team", null),
+                new OnboardingPluginConfig.Category("Backend", null)),
+                1);
+        assertEquals(List.of("Cloud Ops", "Ops Team", "Desktop"), names(index.search("op", 10)));
+        assertEquals(List.of("Cloud Ops"), names(index.search("op", 1)));
+        assertEquals(List.of("Backend", "Cloud Ops"), names(index.search("", 2)));
+        assertEquals(List.of(), names(index.search("web", 10)));
+    }
+
+    @Test
+    void testCategoryConcurrencyLimit(JenkinsRule jenkins) throws Exception {
+        OnboardingPluginConfig.Category category = new OnboardingPluginConfig.Category("Team A", uuid);
+        category.setMaxConcurrentBuilds(1);
+        OnboardingPluginConfig.get().setCategories(List.of(category));
+        jenkins.configRoundtrip();
+        assertEquals(1, OnboardingPluginConfig.get().getCategory(uuid).getMaxConcurrentBuilds());
+        jenkins.jenkins.setNumExecutors(4);
+
+        OneShotEvent started = new OneShotEvent();
+        OneShotEvent release = new OneShotEvent();
+        FreeStyleProject first = jenkins.createFreeStyleProject("first");
+        first.getBuildersList().add(new OnboardingTask(uuid));
+        first.getBuildersList().add(new TestBuilder() {
+            @Override
+            public boolean perform(AbstractBuild<?, ?> build, Launcher launcher, BuildListener listener)
+                    throws InterruptedException {
+                started.signal();
+                release.block();
+                return true;
+            }
+        });
+        FreeStyleProject second = jenkins.createFreeStyleProject("second");
+        second.getBuildersList().add(new OnboardingTask(uuid));
+
+        QueueTaskFuture<FreeStyleBuild> firstBuild = first.scheduleBuild2(0);
+        started.block();
+        assertEquals(1, CategoryThrottle.running(uuid));
+        QueueTaskFuture<FreeStyleBuild> secondBuild = second.scheduleBuild2(0);
+        Queue.Item item;
+        do {
+            assertNull(second.getLastBuild(), "second build started while the first was running");
+            Thread.sleep(100);
+            jenkins.jenkins.getQueue().maintain();
+            item = jenkins.jenkins.getQueue().getItem(second);
+        } while (item == null || !item.isBlocked());
+        assertTrue(item.getWhy().contains("category Team A"), item.getWhy());
+
+        release.signal();
+        jenkins.assertBuildStatusSuccess(firstBuild);
+        jenkins.assertBuildStatusSuccess(secondBuild);
+        jenkins.waitUntilNoActivity();
+        assertEquals(0, CategoryThrottle.running(uuid));
+    }
+
+    @Test
+    void testCategoryIsReleasedWhenTheBuildFailsToStart(JenkinsRule jenkins) throws Exception {
+        OnboardingPluginConfig.Category category = new OnboardingPluginConfig.Category("Team A", uuid);
+        category.setMaxConcurrentBuilds(1);
+        OnboardingPluginConfig.get().setCategories(List.of(category));
+        FreeStyleProject project = jenkins.createFreeStyleProject("unstartable");
+        project.getBuildersList().add(new OnboardingTask(uuid));
+
+        DisableOnLeaving.next = true;
+        project.scheduleBuild2(0);
+        jenkins.waitUntilNoActivity();
+        assertNull(project.getLastBuild());
+        // released by the executor, or else by the periodic reconciliation
+        CategoryThrottle.releaseAbandoned();
+        assertEquals(0, CategoryThrottle.running(uuid));
+
+        // would wait forever for the build that never started if it still counted
+        project.enable();
+        jenkins.buildAndAssertSuccess(project);
+        jenkins.waitUntilNoActivity();
+        assertEquals(0, CategoryThrottle.running(uuid));
+    }
+
+    /**
+     * Disables the next project that leaves the queue, so its executor creates no build.
+     */
+    @TestExtension("testCategoryIsReleasedWhenTheBuildFailsToStart")
+    public static final class DisableOnLeaving extends QueueListener {
+
+        static volatile boolean next;
+
+        @Override
+        public void onLeft(Queue.LeftItem li) {
+            if (next && !li.isCancelled() && li.task instanceof FreeStyleProject project) {
+                next = false;
+                try {
+                    project.disable();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+    }
+
+    private static List<String> names(List<OnboardingPluginConfig.Category> categories) {
+        return categories.stream()
+                .map(OnboardingPluginConfig.Category::getCategoryName)
+                .toList();
+    }
+
+    /**
+     * Pipeline builds may report completion before run listeners have been notified.
+     */
+    private void awaitLatestJob(String expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!expected.equals(BuildHistory.get().getLatestJobForCategory(uuid))
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertEquals(expected, BuildHistory.get().getLatestJobForCategory(uuid));
+    }
+}
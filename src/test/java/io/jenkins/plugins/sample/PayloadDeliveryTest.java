@@ -0,0 +1,175 @@
+package io.jenkins.plugins.sample;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.sun.net.httpserver.HttpServer;
+import hudson.util.Secret;
+import java.io.File;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import net.sf.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
+
+@WithJenkins
+class PayloadDeliveryTest {
+
+    @TempDir
+    File spool;
+
+    private HttpServer server;
+    private final List<String> received = new ArrayList<>();
+    private final AtomicInteger status = new AtomicInteger(200);
+
+    @BeforeEach
+    void startServer() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            int code = status.get();
+            if (code == 200) {
+                synchronized (received) {
+                    for (String line : body.split("\n")) {
+                        if (!line.isEmpty()) {
+                            received.add(line);
+                        }
+                    }
+                }
+            }
+            exchange.sendResponseHeaders(code, -1);
+            exchange.close();
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    private void configure() {
+        OnboardingPluginConfig config = OnboardingPluginConfig.get();
+        config.setConnectionConfig(true);
+        config.setEndpointUrl("http://127.0.0.1:" + server.getAddress().getPort() + "/");
+        config.setUserName("bob");
+        config.setPassword(Secret.fromString("secret"));
+        config.setPayload(Secret.fromString("manifest"));
+    }
+
+    @Test
+    void testEventsAreBatchedAndDelivered(JenkinsRule jenkins) throws Exception {
+        configure();
+        PayloadDelivery delivery = new PayloadDelivery(spool);
+        int events = 2000;
+        for (int i = 1; i <= events; i++) {
+            delivery.enqueue(new PayloadDelivery.Event("job", i, "uuid", "Category", i));
+        }
+        delivery.deliverNow();
+
+        assertEquals(events, received.size());
+        assertEquals(events, delivery.getDelivered());
+        JSONObject first = JSONObject.fromObject(received.get(0));
+        assertEquals("manifest", first.getString("payload"));
+        assertEquals(1, first.getInt("build"));
+        delivery.close();
+    }
+
+    @Test
+    void testUndeliveredBatchesAreSpooledAndRetried(JenkinsRule jenkins) throws Exception {
+        configure();
+        PayloadDelivery delivery = new PayloadDelivery(spool);
+        status.set(503);
+        for (int i = 1; i <= 10; i++) {
+            delivery.enqueue(new PayloadDelivery.Event("job", i, "uuid", "Category", i));
+        }
+        delivery.deliverNow();
+        assertEquals(0, received.size());
+        String[] spooled = spool.list();
+        assertTrue(spooled != null && spooled.length == 1);
+        String content = Files.readString(new File(spool, spooled[0]).toPath(), StandardCharsets.UTF_8);
+        assertFalse(content.contains("manifest"));
+        delivery.close();
+
+        status.set(200);
+        // a fresh instance picks up the spool, as after a restart
+        PayloadDelivery restarted = new PayloadDelivery(spool);
+        restarted.deliverNow();
+        restarted.close();
+        assertEquals(10, received.size());
+        assertEquals(0, spool.list().length);
+    }
+
+    @Test
+    void testCorruptSpoolFileIsSetAside(JenkinsRule jenkins) throws Exception {
+        configure();
+        String event = new PayloadDelivery.Event("job", 1, "uuid", "Category", 1)
+                .toJson()
+                .toString();
+        Files.writeString(
+                new File(spool, "batch-0000000000001-000001.ndjson").toPath(),
+                event + "\n" + event.substring(0, 10) + "\n",
+                StandardCharsets.UTF_8);
+        Files.writeString(
+                new File(spool, "batch-0000000000002-000002.ndjson").toPath(), event + "\n", StandardCharsets.UTF_8);
+
+        PayloadDelivery delivery = new PayloadDelivery(spool);
+        delivery.deliverNow();
+        delivery.close();
+        assertEquals(2, received.size());
+        assertArrayEquals(new String[] {"batch-0000000000001-000001.ndjson.corrupt"}, spool.list());
+    }
+
+    @Test
+    void testOverflowIsSpooledInBatches(JenkinsRule jenkins) throws Exception {
+        configure();
+        status.set(503);
+        PayloadDelivery delivery = new PayloadDelivery(spool);
+        // the first failed delivery backs off, so the queue fills up and overflows
+        int events = 30_000;
+        for (int i = 1; i <= events; i++) {
+            delivery.enqueue(new PayloadDelivery.Event("job", i, "uuid", "Category", i));
+        }
+        delivery.close();
+        String[] spooled = spool.list();
+        assertNotNull(spooled);
+        assertTrue(spooled.length <= events / PayloadDelivery.BATCH_SIZE + 5, "spool files: " + spooled.length);
+
+        status.set(200);
+        PayloadDelivery restarted = new PayloadDelivery(spool);
+        restarted.deliverNow();
+        restarted.close();
+        assertEquals(events, received.size());
+    }
+
+    @Test
+    void testEventsSpooledWhileDisabledAreSentOnceEnabled(JenkinsRule jenkins) throws Exception {
+        configure();
+        OnboardingPluginConfig.get().setConnectionConfig(false);
+        PayloadDelivery delivery = PayloadDelivery.get();
+        for (int i = 1; i <= 10; i++) {
+            delivery.enqueue(new PayloadDelivery.Event("job", i, "uuid", "Category", i));
+        }
+        delivery.deliverNow();
+        assertEquals(0, received.size());
+        assertEquals(0, delivery.getQueued());
+
+        OnboardingPluginConfig.get().setConnectionConfig(true);
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (delivery.getDelivered() < 10 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertEquals(10, received.size());
+    }
+}